@@ -0,0 +1,83 @@
+package tries.bench;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tries.ITrie;
+
+/**
+ * Looking up a batch of tokens with containsBatch and followPathBatch,
+ * against a loop of single calls. The tokens are random dictionary words,
+ * one in four with a letter appended so that it misses.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BatchBenchmark {
+	@Param({ "10", "100", "1000", "10000", "100000" })
+	public int size;
+
+	private ITrie trie;
+	private String[] tokens;
+	private boolean[] found;
+	private ITrie[] nodes;
+
+	@Setup
+	public void setUp() throws IOException {
+		List<String> words = Dictionary.words();
+		trie = Implementations.load(Implementations.TRIE, words);
+		Random random = new Random(5);
+		tokens = new String[size];
+		for (int i = 0; i < size; i++) {
+			String word = words.get(random.nextInt(words.size()));
+			tokens[i] = i % 4 == 0 ? word + "q" : word;
+		}
+		found = new boolean[size];
+		nodes = new ITrie[size];
+	}
+
+	@Benchmark
+	public boolean[] containsLoop() {
+		for (int i = 0; i < tokens.length; i++) {
+			found[i] = trie.contains(tokens[i]);
+		}
+		return found;
+	}
+
+	@Benchmark
+	public boolean[] containsBatch() {
+		trie.containsBatch(tokens, found);
+		return found;
+	}
+
+	@Benchmark
+	public ITrie[] followPathLoop() {
+		for (int i = 0; i < tokens.length; i++) {
+			nodes[i] = trie.followPath(tokens[i]);
+		}
+		return nodes;
+	}
+
+	@Benchmark
+	public ITrie[] followPathBatch() {
+		trie.followPathBatch(tokens, nodes);
+		return nodes;
+	}
+}
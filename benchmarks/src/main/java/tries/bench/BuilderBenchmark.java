@@ -0,0 +1,66 @@
+package tries.bench;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tries.ITrie;
+import tries.impl.DictionaryLoader;
+import tries.impl.Trie;
+import tries.impl.TrieBuilder;
+
+/**
+ * Building a Trie from the dictionary file: the old Scanner and insert loop
+ * of TestTrie.readDictionary(), the memory-mapped DictionaryLoader that
+ * replaced it, and the sorted bulk load of TrieBuilder.
+ */
+@BenchmarkMode({ Mode.AverageTime, Mode.SingleShotTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BuilderBenchmark {
+	private final Path file = Paths.get(System.getProperty("dictionary", "dictionary.txt"));
+
+	@Benchmark
+	public ITrie scannerInsert() throws IOException {
+		ITrie root = new Trie();
+		try (Scanner scanner = new Scanner(new FileInputStream(file.toFile()))) {
+			while (scanner.hasNext()) {
+				root.insert(scanner.next().toLowerCase());
+			}
+		}
+		return root;
+	}
+
+	@Benchmark
+	public ITrie dictionaryLoader() throws IOException {
+		ITrie root = new Trie();
+		new DictionaryLoader().load(file, root);
+		return root;
+	}
+
+	@Benchmark
+	public ITrie builder() throws IOException {
+		return new TrieBuilder().lowerCase(true).build(file);
+	}
+
+	@Benchmark
+	public ITrie parallelBuilder() throws IOException {
+		return new TrieBuilder().lowerCase(true).parallel(true).build(file);
+	}
+}
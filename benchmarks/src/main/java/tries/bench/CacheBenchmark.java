@@ -0,0 +1,94 @@
+package tries.bench;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tries.ITrie;
+import tries.impl.CachingTrie;
+
+/**
+ * Autocomplete traffic replayed against a Trie with and without a
+ * CachingTrie in front. Queries are drawn from the dictionary with Zipf
+ * distributed ranks, so a few prefixes and words come up over and over. Even
+ * ranks ask for the words beginning with the first three letters of their
+ * word and odd ranks for the words one changed letter away, and one request
+ * in a hundred inserts a word, invalidating what it affects.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CacheBenchmark {
+	private static final int REQUESTS = 1 << 16;
+
+	@Param({ "false", "true" })
+	public boolean cached;
+
+	@Param({ "1.0" })
+	public double skew;
+
+	@Param({ "200000" })
+	public long cacheWords;
+
+	private ITrie trie;
+	private String[] words;
+	private int[] ranks = new int[REQUESTS];
+	private int next;
+
+	@Setup
+	public void setUp() throws IOException {
+		List<String> dictionary = new ArrayList<>(Dictionary.words());
+		trie = Implementations.load(Implementations.TRIE, dictionary);
+		if (cached) {
+			trie = new CachingTrie(trie, cacheWords);
+		}
+		Collections.shuffle(dictionary, new Random(42));
+		words = dictionary.toArray(new String[0]);
+		// the cumulative Zipf distribution over the ranks, sampled by binary search
+		double[] cumulative = new double[words.length];
+		double total = 0;
+		for (int r = 0; r < words.length; r++) {
+			total = total + 1 / Math.pow(r + 1, skew);
+			cumulative[r] = total;
+		}
+		Random random = new Random(7);
+		for (int i = 0; i < REQUESTS; i++) {
+			int rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+			ranks[i] = rank < 0 ? Math.min(-rank - 1, words.length - 1) : rank;
+		}
+	}
+
+	@Benchmark
+	public Set<String> replay() {
+		int request = next++ & (REQUESTS - 1);
+		int rank = ranks[request];
+		String word = words[rank];
+		if (request % 100 == 99) {
+			trie.insert(word + "s");
+		}
+		if (rank % 2 == 0) {
+			return trie.findWordsBeginningWith(word.substring(0, Math.min(3, word.length())));
+		}
+		return trie.findCloseWordsChangedLetters(word, 1);
+	}
+}
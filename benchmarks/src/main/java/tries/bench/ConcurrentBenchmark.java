@@ -0,0 +1,136 @@
+package tries.bench;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tries.ITrie;
+import tries.impl.ConcurrentTrie;
+import tries.impl.Trie;
+
+/**
+ * Readers and a writer sharing one trie. Each group starts with half of the
+ * dictionary loaded; three threads look words up and enumerate prefixes
+ * while one inserts the other half, then inserts it again. ConcurrentTrie is
+ * compared with a Trie behind a read-write lock, the simplest way to make
+ * the existing Trie safe for the same workload.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Group)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ConcurrentBenchmark {
+	private static final int SAMPLE = 1024;
+
+	@Param({ Implementations.CONCURRENT_TRIE, "LockedTrie" })
+	public String impl;
+
+	private ITrie trie;
+	private ReadWriteLock lock;
+	private List<String> inserts;
+	private String[] lookups = new String[SAMPLE];
+	private String[] prefixes = new String[SAMPLE];
+
+	/*
+	 * Per thread position in the samples and the words to insert.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int next;
+
+		int next() {
+			return next++;
+		}
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		List<String> words = new ArrayList<>(Dictionary.words());
+		Collections.shuffle(words, new Random(42));
+		List<String> loaded = words.subList(0, words.size() / 2);
+		inserts = words.subList(words.size() / 2, words.size());
+		if (impl.equals(Implementations.CONCURRENT_TRIE)) {
+			trie = Implementations.load(impl, loaded);
+		} else {
+			trie = Implementations.load(Implementations.TRIE, loaded);
+			lock = new ReentrantReadWriteLock();
+		}
+		Random random = new Random(7);
+		for (int i = 0; i < SAMPLE; i++) {
+			// half of the lookups are of words that are being inserted
+			lookups[i] = words.get(random.nextInt(words.size()));
+			prefixes[i] = lookups[i].substring(0, Math.min(4, lookups[i].length()));
+		}
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(2)
+	public boolean contains(Cursor cursor) {
+		String word = lookups[cursor.next() & (SAMPLE - 1)];
+		if (lock == null) {
+			return trie.contains(word);
+		}
+		lock.readLock().lock();
+		try {
+			return trie.contains(word);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public Set<String> findWordsBeginningWith(Cursor cursor) {
+		String prefix = prefixes[cursor.next() & (SAMPLE - 1)];
+		if (lock == null) {
+			return trie.findWordsBeginningWith(prefix);
+		}
+		lock.readLock().lock();
+		try {
+			return trie.findWordsBeginningWith(prefix);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public void insert(Cursor cursor) {
+		String word = inserts.get(cursor.next() % inserts.size());
+		if (lock == null) {
+			trie.insert(word);
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			trie.insert(word);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package tries.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Loads the bundled dictionary.txt, lower cased the same way as
+ * TestTrie.readDictionary(). The file is looked up in the working directory
+ * unless the dictionary system property names another file.
+ */
+final class Dictionary {
+	private static List<String> words;
+
+	private Dictionary() {
+
+	}
+
+	static synchronized List<String> words() throws IOException {
+		if (words == null) {
+			String file = System.getProperty("dictionary", "dictionary.txt");
+			List<String> list = new ArrayList<>();
+			for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.US_ASCII)) {
+				String word = line.trim();
+				if (!word.isEmpty()) {
+					list.add(word.toLowerCase());
+				}
+			}
+			words = Collections.unmodifiableList(list);
+		}
+		return words;
+	}
+}
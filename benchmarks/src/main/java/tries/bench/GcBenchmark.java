@@ -0,0 +1,62 @@
+package tries.bench;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tries.ITrie;
+
+/**
+ * The cost of a full collection while ten copies of the dictionary are
+ * loaded, which is the pause that a heap full of trie nodes makes every
+ * old generation collection pay.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class GcBenchmark {
+	private static final int COPIES = 10;
+
+	@Param({ Implementations.TRIE, Implementations.OFF_HEAP_TRIE })
+	public String impl;
+
+	private List<ITrie> tries = new ArrayList<>();
+
+	@Setup
+	public void setUp() throws IOException {
+		for (int i = 0; i < COPIES; i++) {
+			tries.add(Implementations.load(impl, Dictionary.words()));
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		for (ITrie trie : tries) {
+			if (trie instanceof AutoCloseable) {
+				((AutoCloseable) trie).close();
+			}
+		}
+	}
+
+	@Benchmark
+	public void fullGc() {
+		System.gc();
+	}
+}
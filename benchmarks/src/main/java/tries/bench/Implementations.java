@@ -0,0 +1,86 @@
+package tries.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import tries.ITrie;
+import tries.impl.ConcurrentTrie;
+import tries.impl.Dawg;
+import tries.impl.HashMapTrie;
+import tries.impl.MappedTrie;
+import tries.impl.OffHeapTrie;
+import tries.impl.PersistentTrie;
+import tries.impl.RadixTrie;
+import tries.impl.Trie;
+
+/**
+ * Creates the ITrie implementations that the benchmarks are parameterised
+ * over. The names are the values accepted by the impl parameter; a new node
+ * layout only has to be added here to be compared against the others.
+ *
+ * MappedTrie, Dawg and PersistentTrie cannot be inserted into, so they can
+ * only be loaded: the words are put in a Trie, which is then written to a
+ * temporary snapshot and mapped back in, minimized, or copied.
+ */
+final class Implementations {
+	static final String TRIE = "Trie";
+	static final String HASH_MAP_TRIE = "HashMapTrie";
+	static final String RADIX_TRIE = "RadixTrie";
+	static final String MAPPED_TRIE = "MappedTrie";
+	static final String DAWG = "Dawg";
+	static final String CONCURRENT_TRIE = "ConcurrentTrie";
+	static final String PERSISTENT_TRIE = "PersistentTrie";
+	static final String OFF_HEAP_TRIE = "OffHeapTrie";
+
+	private Implementations() {
+
+	}
+
+	static ITrie create(String name) {
+		switch (name) {
+		case TRIE:
+			return new Trie();
+		case HASH_MAP_TRIE:
+			return new HashMapTrie();
+		case RADIX_TRIE:
+			return new RadixTrie();
+		case CONCURRENT_TRIE:
+			return new ConcurrentTrie();
+		case OFF_HEAP_TRIE:
+			return new OffHeapTrie();
+		default:
+			throw new IllegalArgumentException("Unknown ITrie implementation: " + name);
+		}
+	}
+
+	static ITrie load(String name, List<String> words) {
+		if (name.equals(MAPPED_TRIE)) {
+			return snapshot(load(TRIE, words));
+		}
+		if (name.equals(DAWG)) {
+			return new Dawg(load(TRIE, words));
+		}
+		if (name.equals(PERSISTENT_TRIE)) {
+			return PersistentTrie.of(load(TRIE, words));
+		}
+		ITrie trie = create(name);
+		for (String word : words) {
+			trie.insert(word);
+		}
+		return trie;
+	}
+
+	private static ITrie snapshot(ITrie trie) {
+		try {
+			Path file = Files.createTempFile("dictionary", ".trie");
+			file.toFile().deleteOnExit();
+			MappedTrie.write(trie, file);
+			return MappedTrie.open(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
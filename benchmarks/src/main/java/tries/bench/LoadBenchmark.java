@@ -0,0 +1,46 @@
+package tries.bench;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tries.ITrie;
+
+/**
+ * Bulk load of the whole dictionary, one insert per word.
+ */
+@BenchmarkMode({ Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class LoadBenchmark {
+	@Param({ Implementations.TRIE, Implementations.HASH_MAP_TRIE, Implementations.RADIX_TRIE, Implementations.CONCURRENT_TRIE,
+			Implementations.OFF_HEAP_TRIE })
+	public String impl;
+
+	private List<String> words;
+
+	@Setup
+	public void setUp() throws IOException {
+		words = Dictionary.words();
+	}
+
+	@Benchmark
+	public ITrie insertAll() {
+		return Implementations.load(impl, words);
+	}
+}
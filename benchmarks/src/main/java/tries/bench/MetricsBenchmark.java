@@ -0,0 +1,113 @@
+package tries.bench;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tries.ITrie;
+import tries.impl.MeteredTrie;
+
+/**
+ * The cost of metering a Trie: the plain trie, a MeteredTrie that has been
+ * disabled, which should cost next to nothing, and an enabled one. Each
+ * setting runs in its own fork, so with none the counting of visited nodes
+ * has never been switched on.
+ *
+ * The contended group runs three threads making metered lookups alongside
+ * one looking words up in the plain trie, to show what metering costs when
+ * every core is doing it, and what it costs the calls that are not metered
+ * meanwhile.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class MetricsBenchmark {
+	private static final int SAMPLE = 1024;
+
+	@Param({ "none", "disabled", "enabled" })
+	public String metering;
+
+	private ITrie plain;
+	private ITrie trie;
+	private String[] hits = new String[SAMPLE];
+	private String[] prefixes = new String[SAMPLE];
+	private int next;
+
+	/*
+	 * Per thread position in the samples, for the contended group.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int next;
+
+		int next() {
+			return next++;
+		}
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		List<String> words = Dictionary.words();
+		plain = Implementations.load(Implementations.TRIE, words);
+		trie = plain;
+		if (!metering.equals("none")) {
+			MeteredTrie metered = new MeteredTrie(plain);
+			metered.setEnabled(metering.equals("enabled"));
+			trie = metered;
+		}
+		Random random = new Random(42);
+		for (int i = 0; i < SAMPLE; i++) {
+			String word = words.get(random.nextInt(words.size()));
+			hits[i] = word;
+			prefixes[i] = word.substring(0, Math.min(word.length(), 4));
+		}
+	}
+
+	@Benchmark
+	public boolean contains() {
+		return trie.contains(hits[next++ & (SAMPLE - 1)]);
+	}
+
+	@Benchmark
+	public Set<String> findWordsBeginningWith() {
+		return trie.findWordsBeginningWith(prefixes[next++ & (SAMPLE - 1)]);
+	}
+
+	@Benchmark
+	public List<String> topKWithPrefix() {
+		return trie.topKWithPrefix(prefixes[next++ & (SAMPLE - 1)], 10);
+	}
+
+	@Benchmark
+	@Group("contended")
+	@GroupThreads(3)
+	public boolean containsContended(Cursor cursor) {
+		return trie.contains(hits[cursor.next() & (SAMPLE - 1)]);
+	}
+
+	@Benchmark
+	@Group("contended")
+	@GroupThreads(1)
+	public boolean containsUnmetered(Cursor cursor) {
+		return plain.contains(hits[cursor.next() & (SAMPLE - 1)]);
+	}
+}
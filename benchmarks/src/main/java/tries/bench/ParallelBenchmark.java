@@ -0,0 +1,72 @@
+package tries.bench;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tries.impl.Trie;
+
+/**
+ * Full-tree queries in parallel mode, run in a fork-join pool of the given
+ * size to show how they scale with threads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ParallelBenchmark {
+	@Param({ "1", "2", "4", "8", "16", "32" })
+	public int threads;
+
+	private Trie trie;
+	private ForkJoinPool pool;
+
+	@Setup
+	public void setUp() throws IOException {
+		trie = (Trie) Implementations.load(Implementations.TRIE, Dictionary.words());
+		trie.setParallel(true);
+		pool = new ForkJoinPool(threads);
+	}
+
+	@TearDown
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public Set<String> findAllWords() throws InterruptedException, ExecutionException {
+		return pool.submit(() -> trie.findAllWords()).get();
+	}
+
+	@Benchmark
+	public Set<String> findWordsEndingWith() throws InterruptedException, ExecutionException {
+		return pool.submit(() -> trie.findWordsEndingWith("inging")).get();
+	}
+
+	@Benchmark
+	public Set<String> findWordsContaining() throws InterruptedException, ExecutionException {
+		return pool.submit(() -> trie.findWordsContaining("dog")).get();
+	}
+
+	@Benchmark
+	public long streamAllWordsCount() throws InterruptedException, ExecutionException {
+		return pool.submit(() -> trie.streamAllWords().parallel().count()).get();
+	}
+}
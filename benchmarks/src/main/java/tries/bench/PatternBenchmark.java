@@ -0,0 +1,60 @@
+package tries.bench;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tries.ITrie;
+
+/**
+ * findWordsMatching walking the trie with the automaton of a glob pattern,
+ * against what it replaces: every word from findAllWords checked with the
+ * equivalent regular expression.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PatternBenchmark {
+	@Param({ "d?g*", "*ing", "c[aeiou]t", "[aeiou]????", "*q*u*" })
+	public String pattern;
+
+	private ITrie trie;
+	private Pattern regex;
+
+	@Setup
+	public void setUp() throws IOException {
+		trie = Implementations.load(Implementations.TRIE, Dictionary.words());
+		regex = Pattern.compile(toRegex(pattern));
+	}
+
+	private static String toRegex(String glob) {
+		return glob.replace("?", ".").replace("*", ".*").replace("[!", "[^");
+	}
+
+	@Benchmark
+	public Set<String> findWordsMatching() {
+		return trie.findWordsMatching(pattern);
+	}
+
+	@Benchmark
+	public Set<String> findAllWordsAndRegex() {
+		return trie.findAllWords().stream().filter(word -> regex.matcher(word).matches()).collect(Collectors.toSet());
+	}
+}
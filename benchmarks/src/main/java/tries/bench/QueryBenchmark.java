@@ -0,0 +1,150 @@
+package tries.bench;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tries.EditCosts;
+import tries.ITrie;
+
+/**
+ * Every ITrie query against the loaded dictionary. The lookups cycle through
+ * a fixed sample of dictionary words (hits) and the same words with a letter
+ * appended that are not in the dictionary (misses). The pattern queries use
+ * the same inputs as TestTrie.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class QueryBenchmark {
+	private static final int SAMPLE = 1024;
+
+	@Param({ Implementations.TRIE, Implementations.HASH_MAP_TRIE, Implementations.RADIX_TRIE, Implementations.CONCURRENT_TRIE, Implementations.PERSISTENT_TRIE, Implementations.MAPPED_TRIE,
+			Implementations.DAWG, Implementations.OFF_HEAP_TRIE })
+	public String impl;
+
+	private ITrie trie;
+	private String[] hits = new String[SAMPLE];
+	private String[] misses = new String[SAMPLE];
+
+	/*
+	 * Per thread position in the samples, so that threads do not contend on
+	 * a shared counter.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int next;
+
+		int next() {
+			return next++ & (SAMPLE - 1);
+		}
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		List<String> words = Dictionary.words();
+		trie = Implementations.load(impl, words);
+		Random random = new Random(42);
+		for (int i = 0; i < SAMPLE; i++) {
+			String word = words.get(random.nextInt(words.size()));
+			String miss = word + "q";
+			while (trie.contains(miss)) {
+				miss = miss + "q";
+			}
+			hits[i] = word;
+			misses[i] = miss;
+		}
+	}
+
+	@Benchmark
+	public boolean containsHit(Cursor cursor) {
+		return trie.contains(hits[cursor.next()]);
+	}
+
+	@Benchmark
+	public boolean containsMiss(Cursor cursor) {
+		return trie.contains(misses[cursor.next()]);
+	}
+
+	@Benchmark
+	public ITrie followPath(Cursor cursor) {
+		return trie.followPath(hits[cursor.next()]);
+	}
+
+	@Benchmark
+	public Set<String> findAllWords() {
+		return trie.findAllWords();
+	}
+
+	@Benchmark
+	public Set<String> findWordsBeginningWith() {
+		return trie.findWordsBeginningWith("aard");
+	}
+
+	@Benchmark
+	public int countWordsWithPrefix() {
+		return trie.countWordsWithPrefix("st");
+	}
+
+	@Benchmark
+	public int countLeafNotes() {
+		return trie.countLeafNotes();
+	}
+
+	@Benchmark
+	public int getNumDeeperThan() {
+		return trie.getNumDeeperThan(5);
+	}
+
+	@Benchmark
+	public Set<String> findWordsEndingWith() {
+		return trie.findWordsEndingWith("inging");
+	}
+
+	@Benchmark
+	public Set<String> findWordsContaining() {
+		return trie.findWordsContaining("dog");
+	}
+
+	@Benchmark
+	public Set<String> findCloseWordsChangedLetters() {
+		return trie.findCloseWordsChangedLetters("soul", 1);
+	}
+
+	@Benchmark
+	public Set<String> findCloseWordsAddedLetters() {
+		return trie.findCloseWordsAddedLetters("soul", 1);
+	}
+
+	@Benchmark
+	public Set<String> findCloseWordsRemovedLetters() {
+		return trie.findCloseWordsRemovedLetters("soul", 1);
+	}
+
+	@Benchmark
+	public Set<String> findCloseWordsAllChanges() {
+		return trie.findCloseWordsAllChanges("soul", 2);
+	}
+
+	@Benchmark
+	public Set<String> findCloseWordsWithTranspositions() {
+		return trie.findCloseWords("soul", 2, EditCosts.ALL_CHANGES_AND_TRANSPOSITIONS);
+	}
+}
@@ -0,0 +1,103 @@
+package tries.bench;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tries.ITrie;
+import tries.impl.AhoCorasick;
+
+/**
+ * Finding every dictionary word in a megabyte of text with the Aho-Corasick
+ * automaton compiled from a Trie, from a CharBuffer and from a Reader, against
+ * walking the trie from every position of the text. The text is either words
+ * of the dictionary separated by spaces, where almost every character ends a
+ * match, or log lines where the words are mixed with numbers and punctuation.
+ * Divide the text size by the time per operation for the throughput.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ScanBenchmark {
+	private static final int TEXT_SIZE = 1 << 20;
+
+	@Param({ "words", "log" })
+	public String text;
+
+	private ITrie trie;
+	private AhoCorasick automaton;
+	private String chars;
+	private CharBuffer buffer;
+	private long found;
+
+	@Setup
+	public void setUp() throws IOException {
+		List<String> words = new ArrayList<>(Dictionary.words());
+		trie = Implementations.load(Implementations.TRIE, words);
+		automaton = AhoCorasick.compile(trie);
+		Random random = new Random(42);
+		StringBuilder builder = new StringBuilder(TEXT_SIZE + 100);
+		while (builder.length() < TEXT_SIZE) {
+			if (text.equals("log")) {
+				builder.append(String.format("%08d [%s] ", random.nextInt(100000000), random.nextBoolean() ? "INFO" : "WARN"));
+				for (int i = random.nextInt(8); i >= 0; i--) {
+					builder.append(words.get(random.nextInt(words.size()))).append(random.nextInt(4) == 0 ? "=" + random.nextInt(1000) + " " : " ");
+				}
+				builder.append('\n');
+			} else {
+				builder.append(words.get(random.nextInt(words.size()))).append(' ');
+			}
+		}
+		builder.setLength(TEXT_SIZE);
+		chars = builder.toString();
+		buffer = CharBuffer.wrap(chars.toCharArray());
+	}
+
+	private void found(long start, long end, int word) {
+		found++;
+	}
+
+	@Benchmark
+	public long scanCharBuffer() {
+		return automaton.scan(buffer, this::found);
+	}
+
+	@Benchmark
+	public long scanReader() throws IOException {
+		return automaton.scan(new StringReader(chars), this::found);
+	}
+
+	@Benchmark
+	public long walkFromEveryPosition() {
+		long matches = 0;
+		for (int i = 0; i < chars.length(); i++) {
+			ITrie node = trie;
+			for (int j = i; j < chars.length() && node.hasChild(chars.charAt(j)); j++) {
+				node = node.getChild(chars.charAt(j));
+				if (node.contains("")) {
+					matches++;
+				}
+			}
+		}
+		return matches;
+	}
+}
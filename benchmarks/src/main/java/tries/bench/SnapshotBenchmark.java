@@ -0,0 +1,61 @@
+package tries.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tries.ITrie;
+import tries.impl.MappedTrie;
+import tries.impl.Trie;
+
+/**
+ * Start-up cost: opening a snapshot of the dictionary and answering a first
+ * query, against building a Trie from the word list.
+ */
+@BenchmarkMode({ Mode.AverageTime, Mode.SingleShotTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SnapshotBenchmark {
+	private Path file;
+
+	@Setup
+	public void setUp() throws IOException {
+		file = Files.createTempFile("dictionary", ".trie");
+		MappedTrie.write(Implementations.load(Implementations.TRIE, Dictionary.words()), file);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Benchmark
+	public boolean openSnapshot() throws IOException {
+		return MappedTrie.open(file).contains("aardvark");
+	}
+
+	@Benchmark
+	public boolean insertAll() throws IOException {
+		ITrie trie = new Trie();
+		for (String word : Dictionary.words()) {
+			trie.insert(word);
+		}
+		return trie.contains("aardvark");
+	}
+}
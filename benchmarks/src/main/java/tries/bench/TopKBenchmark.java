@@ -0,0 +1,54 @@
+package tries.bench;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tries.ITrie;
+
+/**
+ * Top ten completions of prefixes with subtrees of very different sizes,
+ * with every dictionary word given a random weight.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class TopKBenchmark {
+	@Param({ Implementations.TRIE, Implementations.HASH_MAP_TRIE })
+	public String impl;
+
+	@Param({ "s", "st", "sta", "aard" })
+	public String prefix;
+
+	private ITrie trie;
+
+	@Setup
+	public void setUp() throws IOException {
+		trie = Implementations.create(impl);
+		Random random = new Random(42);
+		for (String word : Dictionary.words()) {
+			trie.insert(word, random.nextInt(1000000));
+		}
+	}
+
+	@Benchmark
+	public List<String> topTen() {
+		return trie.topKWithPrefix(prefix, 10);
+	}
+}
@@ -0,0 +1,70 @@
+package tries.bench;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tries.impl.PersistentTrie;
+
+/**
+ * Publishing a new version of the dictionary: one word at a time, and a
+ * batch of 1000 words merged at once. Run with the gc profiler, the
+ * allocation rate gives the memory each version adds.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class VersionBenchmark {
+	private static final int BATCH = 1000;
+
+	private PersistentTrie dictionary;
+	private List<String> updates = new ArrayList<>();
+
+	/*
+	 * Per thread position in the updates.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int next;
+
+		int next() {
+			return next++ % BATCH;
+		}
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		List<String> words = Dictionary.words();
+		dictionary = (PersistentTrie) Implementations.load(Implementations.PERSISTENT_TRIE, words);
+		Random random = new Random(42);
+		for (int i = 0; i < BATCH; i++) {
+			updates.add(words.get(random.nextInt(words.size())) + "x" + i);
+		}
+	}
+
+	@Benchmark
+	public PersistentTrie with(Cursor cursor) {
+		return dictionary.with(updates.get(cursor.next()));
+	}
+
+	@Benchmark
+	public PersistentTrie withAll() {
+		return dictionary.withAll(updates);
+	}
+}
@@ -2,15 +2,58 @@ package junit;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
 
 import org.junit.Test;
 
+import tries.EditCosts;
 import tries.ITrie;
+import tries.WordPattern;
+import tries.impl.AhoCorasick;
+import tries.impl.CachingTrie;
+import tries.impl.ConcurrentTrie;
+import tries.impl.Dawg;
+import tries.impl.DictionaryLoader;
+import tries.impl.HashMapTrie;
+import tries.impl.MappedTrie;
+import tries.impl.MeteredTrie;
+import tries.impl.OffHeapTrie;
+import tries.impl.PersistentTrie;
+import tries.impl.RadixTrie;
+import tries.impl.TrieBuilder;
 import tries.impl.Trie;
 //import tries.sol.Trie;
 
@@ -19,14 +62,65 @@ public class TestTrie
 {
     // testing helper function to create a dictionary
     private ITrie readDictionary() throws Exception {
-        ITrie root=new Trie();
+        return readDictionary(new Trie());
+    }
+    
+    private ITrie readDictionary(ITrie root) throws Exception {
+        new DictionaryLoader().load(Paths.get("dictionary.txt"), root);
+        return root;
+    }
+    
+    @Test
+    public void testDictionaryLoader() throws Exception {
+        ITrie scanned = new Trie();
         Scanner scanner=new Scanner(new FileInputStream("dictionary.txt"));
         while (scanner.hasNext()) {
             String word=scanner.next().toLowerCase();
-            root.insert(word);
+            scanned.insert(word);
         }
         scanner.close();
-        return root;
+        List<DictionaryLoader.Stats> reports = new ArrayList<>();
+        ITrie loaded = new Trie();
+        DictionaryLoader.Stats stats = new DictionaryLoader().progress(reports::add, 500000).load(Paths.get("dictionary.txt"), loaded);
+        assertEquals(scanned.findAllWords(), loaded.findAllWords());
+        assertEquals(178691, stats.getWords());
+        assertEquals(stats.getTotalBytes(), stats.getBytes());
+        assertTrue(reports.size() >= 2);
+        assertEquals(stats.getBytes(), reports.get(reports.size() - 1).getBytes());
+        // words cut by the end of a window, blank lines, CRLF and no newline at the end
+        Path file = Files.createTempFile("words", ".txt");
+        try {
+            Files.write(file, "Ant\r\nANTS\n\n  bee\tbeetle\r\nzebra".getBytes(StandardCharsets.US_ASCII));
+            for (int window : Arrays.asList(7, 8, 100)){
+                ITrie small = new Trie();
+                assertEquals(5, new DictionaryLoader().window(window).load(file, small).getWords());
+                assertEquals(new HashSet<>(Arrays.asList("ant", "ants", "bee", "beetle", "zebra")), small.findAllWords());
+            }
+            try {
+                new DictionaryLoader().window(6).load(file, new Trie());
+                fail();
+            } catch (IOException e) {
+                // "beetle" and the whitespace after it do not fit
+            }
+            // UTF-8 is decoded and lower cased as TrieBuilder does, whatever the window
+            Files.write(file, "Caf\u00e9 NA\u00cfVE\r\nstra\u00dfe zebra\n\u0416\u0423\u041a".getBytes(StandardCharsets.UTF_8));
+            Set<String> unicode = new HashSet<>(Arrays.asList("caf\u00e9", "na\u00efve", "stra\u00dfe", "\u0436\u0443\u043a", "zebra"));
+            assertEquals(unicode, new TrieBuilder().lowerCase(true).build(file).findAllWords());
+            for (int window : Arrays.asList(8, 9, 100)){
+                ITrie small = new Trie();
+                assertEquals(5, new DictionaryLoader().window(window).load(file, small).getWords());
+                assertEquals(unicode, small.findAllWords());
+            }
+            Files.write(file, new byte[] { 'a', 'n', 't', ' ', 'b', (byte) 0xC3, 'e' });
+            try {
+                new DictionaryLoader().load(file, new Trie());
+                fail();
+            } catch (IOException e) {
+                // 0xC3 starts a two byte sequence that 'e' cannot continue
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
     }
     
     @Test
@@ -61,6 +155,26 @@ public class TestTrie
         }
     }
     
+    @Test
+    public void testManyChildren() throws Exception {
+        // enough children to switch the root to the dense layout and back
+        ITrie t = new Trie();
+        for (char ch = 'z'; ch >= 'a'; ch--){
+            t.insert(ch + "x");
+        }
+        t.insert("-x");
+        for (char ch = 'a'; ch <= 'z'; ch++){
+            assertTrue(t.hasChild(ch));
+            assertTrue(t.getChild(ch).getParent() == t);
+            assertTrue(t.contains(ch + "x"));
+        }
+        assertTrue(t.hasChild('-'));
+        assertTrue(t.contains("-x"));
+        assertFalse(t.hasChild('A'));
+        assertEquals(27, t.findAllWords().size());
+        assertEquals(27, t.countLeafNotes());
+    }
+
     @Test
     public void testFollowPath() throws Exception {
         ITrie t = new Trie();
@@ -112,6 +226,56 @@ public class TestTrie
         assertEquals(false, t.contains("dogs"));
     }
     
+    @Test
+    public void testCharSequenceRanges() throws Exception {
+        ITrie t = new Trie();
+        StringBuilder text = new StringBuilder("the dogma of dogs");
+        t.insert(text, 4, 7);
+        t.insert(text, 4, 9);
+        assertTrue(t.contains("dog"));
+        assertTrue(t.contains("dogma"));
+        assertTrue(t.contains(text, 4, 7));
+        assertTrue(t.contains(text, 13, 16));
+        assertFalse(t.contains(text, 13, 17));
+        assertFalse(t.contains(text, 4, 6));
+        assertTrue(t.followPath(text, 4, 8) == t.followPath("dogm"));
+        assertTrue(t.followPath(text, 0, 3) == null);
+        assertTrue(t.followPath(text, 5, 5) == t);
+    }
+
+    @Test
+    public void testContainsBatch() throws Exception {
+        List<String> words = new ArrayList<>(readDictionary().findAllWords());
+        Collections.shuffle(words, new Random(3));
+        List<String> batch = new ArrayList<>(words.subList(0, 500));
+        // misses, prefixes of words, duplicates and the empty word
+        batch.addAll(Arrays.asList("aardvarkz", "aardv", "qqq", "", "st", "aardvark", "aardvark", "zzzz"));
+        for (String word : words.subList(500, 600)){
+            batch.add(word + "q");
+            batch.add(word.substring(0, word.length() / 2));
+        }
+        String[] paths = batch.toArray(new String[0]);
+        for (ITrie trie : Arrays.asList(readDictionary(), readDictionary(new HashMapTrie()))){
+            boolean[] found = new boolean[paths.length];
+            ITrie[] nodes = new ITrie[paths.length];
+            trie.containsBatch(paths, found);
+            trie.followPathBatch(paths, nodes);
+            for (int i = 0; i < paths.length; i++){
+                assertEquals(paths[i], trie.contains(paths[i]), found[i]);
+                assertTrue(paths[i], trie.followPath(paths[i]) == nodes[i]);
+            }
+            assertTrue(trie.containsAll(words.subList(0, 1000)));
+            assertFalse(trie.containsAll(Arrays.asList("aardvark", "aardvarkz")));
+            assertTrue(trie.containsAll(Collections.emptyList()));
+            try {
+                trie.containsBatch(paths, new boolean[1]);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
     @Test
     public void testInsertAndContains() throws Exception {
         ITrie root = readDictionary();
@@ -140,6 +304,810 @@ public class TestTrie
         assertTrue(words.contains("aardwolves"));
     }
     
+    @Test
+    public void testTopKWithPrefix() throws Exception {
+        ITrie t = new Trie();
+        t.insert("dog", 5);
+        t.insert("dogma", 9);
+        t.insert("door", 5);
+        t.insert("dot");
+        t.insert("cat", 100);
+        assertEquals(Arrays.asList("dogma", "dog", "door"), t.topKWithPrefix("do", 3));
+        assertEquals(Arrays.asList("dogma", "dog", "door", "dot"), t.topKWithPrefix("do", 10));
+        assertEquals(Arrays.asList("cat", "dogma"), t.topKWithPrefix("", 2));
+        assertTrue(t.topKWithPrefix("x", 3).isEmpty());
+        // lowering a weight has to update the cached maximum above it
+        t.insert("dogma", 1);
+        assertEquals(Arrays.asList("dog", "door"), t.topKWithPrefix("do", 2));
+    }
+    
+    @Test
+    public void testTopKWithPrefixDictionary() throws Exception {
+        ITrie root = new Trie();
+        Map<String, Integer> weights = new HashMap<>();
+        Random random = new Random(7);
+        for (String word : readDictionary().findAllWords()){
+            int weight = random.nextInt(1000);
+            weights.put(word, weight);
+            root.insert(word, weight);
+        }
+        for (String prefix : Arrays.asList("s", "st", "aard", "")){
+            List<String> expected = new ArrayList<>(root.findWordsBeginningWith(prefix));
+            expected.sort((a, b) -> weights.get(a).equals(weights.get(b)) ? a.compareTo(b) : weights.get(b) - weights.get(a));
+            assertEquals(expected.subList(0, Math.min(10, expected.size())), root.topKWithPrefix(prefix, 10));
+        }
+    }
+    
+    @Test
+    public void testStreams() throws Exception {
+        ITrie root = readDictionary(new Trie(Trie.Index.SUFFIX, Trie.Index.SUBSTRING));
+        List<String> all = root.streamAllWords().collect(Collectors.toList());
+        List<String> sorted = new ArrayList<>(root.findAllWords());
+        Collections.sort(sorted);
+        assertEquals(sorted, all);
+        assertEquals(Arrays.asList("aa", "aah", "aahed"), root.streamAllWords().limit(3).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("aardvark", "aardvarks", "aardwolf", "aardwolves"),
+                root.streamWordsBeginningWith("aard").collect(Collectors.toList()));
+        assertEquals(0, root.streamWordsBeginningWith("qqq").count());
+        assertEquals(root.findWordsEndingWith("inging"), root.streamWordsEndingWith("inging").collect(Collectors.toSet()));
+        assertEquals(root.findWordsContaining("dog"), root.streamWordsContaining("dog").collect(Collectors.toSet()));
+        assertEquals(root.findCloseWordsAllChanges("soul", 2),
+                root.streamCloseWords("soul", 2, EditCosts.ALL_CHANGES).collect(Collectors.toSet()));
+    }
+    
+    @Test
+    public void testStreamPages() throws Exception {
+        ITrie root = readDictionary();
+        List<String> expected = root.streamWordsBeginningWith("st").collect(Collectors.toList());
+        List<String> paged = new ArrayList<>();
+        String after = "";
+        while (true){
+            List<String> page = root.streamWordsBeginningWith("st", after).limit(100).collect(Collectors.toList());
+            if (page.isEmpty()){
+                break;
+            }
+            paged.addAll(page);
+            after = page.get(page.size() - 1);
+        }
+        assertEquals(expected, paged);
+        // cursors that are not words, or lie outside the prefix
+        assertEquals(Arrays.asList("aardwolf", "aardwolves"),
+                root.streamWordsBeginningWith("aard", "aardw").collect(Collectors.toList()));
+        assertEquals(Arrays.asList("aardvarks", "aardwolf"),
+                root.streamWordsBeginningWith("aard", "aardvark").limit(2).collect(Collectors.toList()));
+        assertEquals(4, root.streamWordsBeginningWith("aard", "aa").count());
+        assertEquals(0, root.streamWordsBeginningWith("aard", "ab").count());
+        assertEquals(0, root.streamWordsBeginningWith("aard", "aardwolves").count());
+    }
+
+    // split as far as possible and concatenate the parts in order, checking that every part knows its size
+    private static void splitAll(Spliterator<String> words, List<String> out) {
+        long size = words.getExactSizeIfKnown();
+        Spliterator<String> first = words.trySplit();
+        if (first == null){
+            int before = out.size();
+            words.forEachRemaining(out::add);
+            assertEquals(size, out.size() - before);
+            return;
+        }
+        assertTrue(first.hasCharacteristics(Spliterator.SIZED));
+        assertEquals(size, first.getExactSizeIfKnown() + words.getExactSizeIfKnown());
+        splitAll(first, out);
+        splitAll(words, out);
+    }
+
+    @Test
+    public void testSpliterator() throws Exception {
+        ITrie root = readDictionary();
+        List<String> expected = root.streamAllWords().collect(Collectors.toList());
+        List<String> split = new ArrayList<>();
+        splitAll(root.streamAllWords().spliterator(), split);
+        assertEquals(expected, split);
+        // split after a few words have been read
+        Spliterator<String> started = root.streamWordsBeginningWith("st").spliterator();
+        List<String> partly = new ArrayList<>();
+        for (int i = 0; i < 50; i++){
+            assertTrue(started.tryAdvance(partly::add));
+        }
+        splitAll(started, partly);
+        assertEquals(root.streamWordsBeginningWith("st").collect(Collectors.toList()), partly);
+        assertEquals(expected, root.streamAllWords().parallel().collect(Collectors.toList()));
+        assertEquals(expected.size(), root.streamAllWords().spliterator().getExactSizeIfKnown());
+        assertEquals(expected, Arrays.asList(root.streamAllWords().parallel().toArray(String[]::new)));
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        Trie sequential = (Trie)readDictionary();
+        Trie parallel = (Trie)readDictionary();
+        parallel.setParallel(true);
+        assertEquals(sequential.findAllWords(), parallel.findAllWords());
+        assertEquals(sequential.findWordsBeginningWith("st"), parallel.findWordsBeginningWith("st"));
+        assertEquals(sequential.findWordsEndingWith("inging"), parallel.findWordsEndingWith("inging"));
+        assertEquals(sequential.findWordsContaining("dog"), parallel.findWordsContaining("dog"));
+        assertEquals(sequential.countLeafNotes(), parallel.countLeafNotes());
+        for (int depth = 0; depth < 5; depth++){
+            assertEquals(sequential.getNumDeeperThan(depth), parallel.getNumDeeperThan(depth));
+        }
+        // the mode belongs to the whole trie
+        assertEquals(sequential.followPath("st").findAllWords(), parallel.followPath("st").findAllWords());
+    }
+
+    @Test
+    public void testMappedSnapshot() throws Exception {
+        ITrie root = readDictionary();
+        Path file = Files.createTempFile("dictionary", ".trie");
+        try {
+            MappedTrie.write(root, file);
+            ITrie mapped = MappedTrie.open(file);
+            assertEquals(root.findAllWords(), mapped.findAllWords());
+            assertEquals(root.streamAllWords().collect(Collectors.toList()), mapped.streamAllWords().collect(Collectors.toList()));
+            for (String word : Arrays.asList("ably", "phooey", "aardvark", "spacco", "aardvar", "")){
+                assertEquals(word, root.contains(word), mapped.contains(word));
+            }
+            assertEquals(root.findWordsBeginningWith("aard"), mapped.findWordsBeginningWith("aard"));
+            assertEquals(0, mapped.streamWordsBeginningWith("qqq").count());
+            assertEquals(root.findWordsEndingWith("inging"), mapped.findWordsEndingWith("inging"));
+            assertEquals(root.countLeafNotes(), mapped.countLeafNotes());
+            assertEquals(root.getNumDeeperThan(3), mapped.getNumDeeperThan(3));
+            ITrie node = mapped.followPath("dog");
+            assertTrue(node.contains("ma"));
+            assertTrue(node.getParent().contains("g"));
+            assertTrue(node.getParent().getParent().getParent() == mapped);
+            assertTrue(mapped.getParent() == null);
+            assertTrue(mapped.followPath("dogx") == null);
+            // any ITrie can be written
+            MappedTrie.write(readDictionary(new HashMapTrie()), file);
+            assertEquals(root.findAllWords(), MappedTrie.open(file).findAllWords());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+    
+    @Test
+    public void testDawg() throws Exception {
+        ITrie root = readDictionary();
+        Dawg dawg = new Dawg(root);
+        assertEquals(root.streamAllWords().collect(Collectors.toList()), dawg.streamAllWords().collect(Collectors.toList()));
+        for (String word : Arrays.asList("ably", "phooey", "aardvark", "spacco", "aardvar", "")){
+            assertEquals(word, root.contains(word), dawg.contains(word));
+        }
+        assertEquals(root.findWordsBeginningWith("aard"), dawg.findWordsBeginningWith("aard"));
+        assertEquals(root.findWordsEndingWith("inging"), dawg.findWordsEndingWith("inging"));
+        assertEquals(root.countLeafNotes(), dawg.countLeafNotes());
+        assertEquals(root.getNumDeeperThan(3), dawg.getNumDeeperThan(3));
+        // shared suffixes leave far fewer states than trie nodes
+        assertTrue(dawg.stateCount() * 5 < root.getNumDeeperThan(-1));
+        // "inging" ends in one shared state, but each path to it has its own parents
+        ITrie swinging = dawg.followPath("swinging");
+        ITrie bringing = dawg.followPath("bringing");
+        ITrie s = swinging;
+        ITrie b = bringing;
+        for (int i = 0; i < 7; i++){
+            s = s.getParent();
+            b = b.getParent();
+        }
+        assertTrue(s.contains("wing"));
+        assertFalse(s.contains("ring"));
+        assertTrue(b.contains("ring"));
+        assertTrue(s.getParent() == dawg);
+        assertTrue(dawg.followPath("dog").getParent().getParent().getParent() == dawg);
+        assertTrue(dawg.getParent() == null);
+        assertTrue(dawg.followPath("dogx") == null);
+        // any ITrie can be minimized
+        assertEquals(root.findAllWords(), new Dawg(readDictionary(new HashMapTrie())).findAllWords());
+    }
+    
+    @Test
+    public void testRadixTrie() throws Exception {
+        ITrie root = readDictionary();
+        RadixTrie radix = (RadixTrie)readDictionary(new RadixTrie());
+        assertEquals(root.streamAllWords().collect(Collectors.toList()), radix.streamAllWords().collect(Collectors.toList()));
+        for (String word : Arrays.asList("ably", "phooey", "aardvark", "aardwolves", "spacco", "aardvar", "aardwolvesx", "")){
+            assertEquals(word, root.contains(word), radix.contains(word));
+        }
+        for (String prefix : Arrays.asList("aard", "aardw", "aardwolve", "st", "qqq", "")){
+            assertEquals(prefix, root.findWordsBeginningWith(prefix), radix.findWordsBeginningWith(prefix));
+        }
+        assertEquals(root.countLeafNotes(), radix.countLeafNotes());
+        for (int depth = -1; depth < 6; depth++){
+            assertEquals(root.getNumDeeperThan(depth), radix.getNumDeeperThan(depth));
+        }
+        assertEquals(root.followPath("aardwo").getNumDeeperThan(1), radix.followPath("aardwo").getNumDeeperThan(1));
+        assertTrue(radix.nodeCount() < root.getNumDeeperThan(-1));
+        // "aardwolves" ends in a compressed edge, walked through one letter at a time
+        ITrie node = radix.followPath("aardwolv");
+        assertTrue(node.hasChild('e'));
+        assertFalse(node.hasChild('a'));
+        assertTrue(node.getChild('e').getChild('s').contains(""));
+        assertTrue(node.getParent().getParent().getParent().getParent() == radix.followPath("aard"));
+        assertTrue(radix.followPath("a").getParent() == radix);
+    }
+    
+    @Test
+    public void testRadixTrieSplits() throws Exception {
+        RadixTrie t = new RadixTrie();
+        t.insert("dogmatic");
+        assertEquals(2, t.nodeCount());
+        ITrie dogm = t.followPath("dogm");
+        ITrie dogma = t.followPath("dogma");
+        // splitting the edge under these positions must not move them
+        t.insert("dog");
+        t.insert("dogmas");
+        dogm.insert("e");
+        assertEquals(new HashSet<>(Arrays.asList("dog", "dogme", "dogmas", "dogmatic")), t.findAllWords());
+        assertTrue(dogma.hasChild('s'));
+        assertTrue(dogma.getParent().getParent() == t.followPath("dog"));
+        assertTrue(dogm.hasChild('e'));
+        assertTrue(dogm.getChild('a').getChild('t').contains("ic"));
+        assertEquals(new HashSet<>(Arrays.asList("dogmas", "dogmatic")), t.findWordsBeginningWith("dogma"));
+        assertTrue(t.contains("dogmatic"));
+        assertFalse(t.contains("dogm"));
+    }
+    
+    @Test
+    public void testRemove() throws Exception {
+        List<String> words = new ArrayList<>(readDictionary().findAllWords());
+        Collections.sort(words);
+        Collections.shuffle(words, new Random(3));
+        List<String> removed = words.subList(0, words.size() / 2);
+        ITrie expected = new Trie();
+        for (String word : words.subList(words.size() / 2, words.size())){
+            expected.insert(word);
+        }
+        for (ITrie trie : Arrays.asList(readDictionary(), readDictionary(new Trie(Trie.Index.SUFFIX, Trie.Index.SUBSTRING)),
+                readDictionary(new HashMapTrie()), readDictionary(new RadixTrie()))){
+            for (String word : removed){
+                assertTrue(word, trie.remove(word));
+            }
+            assertFalse(trie.remove(removed.get(0)));
+            assertFalse(trie.remove("qqq"));
+            assertEquals(expected.findAllWords(), trie.findAllWords());
+            // pruning leaves exactly the nodes a trie of the remaining words has
+            assertEquals(expected.countLeafNotes(), trie.countLeafNotes());
+            assertEquals(expected.getNumDeeperThan(-1), trie.getNumDeeperThan(-1));
+            assertEquals(expected.findWordsEndingWith("ing"), trie.findWordsEndingWith("ing"));
+            assertTrue(trie.findWordsBeginningWith("qqq").isEmpty());
+            assertEquals(expected.findWordsContaining("dog"), trie.findWordsContaining("dog"));
+            assertEquals(expected.findWordsContaining("ab"), trie.findWordsContaining("ab"));
+        }
+    }
+    
+    @Test
+    public void testRemoveAllWithPrefix() throws Exception {
+        for (ITrie trie : Arrays.asList(readDictionary(), readDictionary(new Trie(Trie.Index.SUFFIX, Trie.Index.SUBSTRING)),
+                readDictionary(new HashMapTrie()), readDictionary(new RadixTrie()))){
+            Set<String> expected = readDictionary().findAllWords();
+            int count = trie.findWordsBeginningWith("st").size();
+            expected.removeAll(trie.findWordsBeginningWith("st"));
+            assertEquals(count, trie.removeAllWithPrefix("st"));
+            // "aardwo" ends partway along a compressed edge in a RadixTrie
+            expected.removeAll(trie.findWordsBeginningWith("aardwo"));
+            assertEquals(2, trie.removeAllWithPrefix("aardwo"));
+            assertEquals(0, trie.removeAllWithPrefix("qqq"));
+            assertEquals(expected, trie.findAllWords());
+            assertFalse(trie.followPath("s").hasChild('t'));
+            assertTrue(trie.contains("aardvark"));
+            assertFalse(trie.findWordsContaining("rdwo").contains("aardwolves"));
+            assertEquals(0, trie.findWordsContaining("stu").stream().filter(word -> word.startsWith("st")).count());
+            assertEquals(expected.size(), trie.removeAllWithPrefix(""));
+            assertEquals(0, trie.findAllWords().size());
+            assertEquals(1, trie.countLeafNotes());
+            trie.insert("dog");
+            assertEquals(Collections.singleton("dog"), trie.findAllWords());
+        }
+    }
+    
+    @Test
+    public void testRemoveBelowRoot() throws Exception {
+        Trie t = new Trie(Trie.Index.SUBSTRING);
+        t.insert("dog");
+        t.insert("dogma");
+        t.insert("dogmas", 7);
+        t.insert("cat", 3);
+        ITrie dog = t.followPath("dog");
+        assertTrue(dog.remove("mas"));
+        assertEquals(new HashSet<>(Arrays.asList("dog", "dogma", "cat")), t.findAllWords());
+        assertEquals(new HashSet<>(Arrays.asList("dog", "dogma")), t.findWordsContaining("og"));
+        // the weight of a removed word no longer counts towards the maximum above it
+        assertEquals(Arrays.asList("cat", "dog"), t.topKWithPrefix("", 2));
+        assertFalse(dog.followPath("ma").hasChild('s'));
+        // a removed word can be inserted again without being indexed twice
+        t.insert("dogmas");
+        assertEquals(new HashSet<>(Arrays.asList("dog", "dogma", "dogmas")), t.findWordsContaining("og"));
+        assertEquals(1, dog.removeAllWithPrefix("mas"));
+        assertEquals(2, t.removeAllWithPrefix("do"));
+        assertTrue(t.followPath("do") == null);
+        assertTrue(dog.getParent().getParent() == null);
+        assertEquals(Collections.singleton("cat"), t.findAllWords());
+        assertEquals(Collections.emptySet(), t.findWordsContaining("og"));
+    }
+
+    @Test
+    public void testStreamContainingWhileChanging() throws Exception {
+        Trie t = new Trie(Trie.Index.SUBSTRING);
+        t.insert("dog");
+        t.insert("bog");
+        t.insert("dogma");
+        t.insert("fog");
+        Iterator<String> words = t.streamWordsContaining("og").iterator();
+        assertEquals("dog", words.next());
+        // words added or renumbered while the stream is read do not show up in it
+        t.insert("smog");
+        t.remove("bog");
+        t.compact();
+        List<String> rest = new ArrayList<>();
+        words.forEachRemaining(rest::add);
+        assertEquals(Arrays.asList("dogma", "fog"), rest);
+        assertEquals(new HashSet<>(Arrays.asList("dog", "dogma", "fog", "smog")), t.findWordsContaining("og"));
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        Trie trie = (Trie)readDictionary(new Trie(Trie.Index.SUFFIX, Trie.Index.SUBSTRING));
+        RadixTrie radix = (RadixTrie)readDictionary(new RadixTrie());
+        ITrie expected = new Trie();
+        for (String word : readDictionary().findAllWords()){
+            if (word.hashCode() % 10 == 0){
+                expected.insert(word);
+            } else {
+                trie.remove(word);
+                radix.remove(word);
+            }
+        }
+        trie.compact();
+        radix.compact();
+        for (ITrie t : Arrays.asList(trie, radix)){
+            assertEquals(expected.findAllWords(), t.findAllWords());
+            assertEquals(expected.countLeafNotes(), t.countLeafNotes());
+            assertEquals(expected.getNumDeeperThan(3), t.getNumDeeperThan(3));
+            assertEquals(expected.findWordsBeginningWith("st"), t.findWordsBeginningWith("st"));
+        }
+        assertEquals(expected.findWordsEndingWith("ing"), trie.findWordsEndingWith("ing"));
+        assertEquals(expected.findWordsContaining("dog"), trie.findWordsContaining("dog"));
+        assertEquals(expected.findWordsContaining("st"), trie.findWordsContaining("st"));
+        // merging the edges leaves as many nodes as a RadixTrie built from the remaining words
+        RadixTrie rebuilt = new RadixTrie();
+        for (String word : expected.findAllWords()){
+            rebuilt.insert(word);
+        }
+        assertEquals(rebuilt.nodeCount(), radix.nodeCount());
+        trie.insert("aardwolf");
+        assertTrue(trie.findWordsContaining("rdwo").contains("aardwolf"));
+    }
+    
+    @Test
+    public void testRemoveReadOnly() throws Exception {
+        Path file = Files.createTempFile("dictionary", ".trie");
+        try {
+            MappedTrie.write(readDictionary(), file);
+            for (ITrie trie : Arrays.asList(new Dawg(readDictionary()), MappedTrie.open(file), new ConcurrentTrie())){
+                try {
+                    trie.remove("dog");
+                    fail();
+                } catch (UnsupportedOperationException e) {
+                    // expected
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+    
+    @Test
+    public void testPersistentTrie() throws Exception {
+        PersistentTrie empty = new PersistentTrie();
+        PersistentTrie v1 = empty.with("dog").with("dogma").with("cat");
+        PersistentTrie v2 = v1.with("dogmas").without("cat");
+        assertEquals(Collections.emptySet(), empty.findAllWords());
+        assertEquals(new HashSet<>(Arrays.asList("dog", "dogma", "cat")), v1.findAllWords());
+        assertEquals(new HashSet<>(Arrays.asList("dog", "dogma", "dogmas")), v2.findAllWords());
+        assertTrue(v2.with("dog") == v2);
+        assertTrue(v2.without("cat") == v2);
+        assertFalse(v2.hasChild('c'));
+        assertEquals(1, v2.countLeafNotes());
+        // a cursor knows the way back up its own version
+        ITrie dogm = v2.followPath("dogm");
+        assertTrue(dogm.getParent().contains(""));
+        assertTrue(dogm.getParent().getParent().getParent().getParent() == v2);
+        PersistentTrie v3 = ((PersistentTrie)dogm).with("atic");
+        assertEquals(new HashSet<>(Arrays.asList("dog", "dogma", "dogmas", "dogmatic")), v3.findAllWords());
+        assertTrue(v3.getParent() == null);
+        assertFalse(v2.contains("dogmatic"));
+        // the new version comes back as a root
+        assertEquals(new HashSet<>(Arrays.asList("dog", "dogmas", "dogmatic")), ((PersistentTrie)v3.followPath("dog")).without("ma").findAllWords());
+        assertEquals(Collections.emptySet(), v1.without("dog").without("dogma").without("cat").findAllWords());
+        try {
+            v1.insert("dog");
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+    
+    @Test
+    public void testPersistentTrieVersions() throws Exception {
+        ITrie root = readDictionary();
+        PersistentTrie dictionary = PersistentTrie.of(root);
+        assertEquals(root.streamAllWords().collect(Collectors.toList()), dictionary.streamAllWords().collect(Collectors.toList()));
+        assertEquals(root.countLeafNotes(), dictionary.countLeafNotes());
+        assertEquals(root.getNumDeeperThan(4), dictionary.getNumDeeperThan(4));
+        assertEquals(root.findWordsBeginningWith("aard"), dictionary.findWordsBeginningWith("aard"));
+        List<String> added = Arrays.asList("zzyzx", "aardvarkish", "blorft", "dog");
+        PersistentTrie batch = dictionary.withAll(added);
+        PersistentTrie single = dictionary;
+        for (String word : added){
+            single = single.with(word);
+        }
+        assertEquals(single.findAllWords(), batch.findAllWords());
+        assertEquals(root.findAllWords().size() + 3, batch.findAllWords().size());
+        // the old version is untouched
+        assertFalse(dictionary.contains("zzyzx"));
+        assertEquals(root.findAllWords(), dictionary.findAllWords());
+        assertEquals(root.findAllWords(), batch.without("zzyzx").without("aardvarkish").without("blorft").findAllWords());
+    }
+    
+    @Test
+    public void testConcurrentTrie() throws Exception {
+        ITrie root = readDictionary();
+        ITrie concurrent = readDictionary(new ConcurrentTrie());
+        assertEquals(root.streamAllWords().collect(Collectors.toList()), concurrent.streamAllWords().collect(Collectors.toList()));
+        for (String word : Arrays.asList("ably", "phooey", "aardvark", "aardvar", "")){
+            assertEquals(word, root.contains(word), concurrent.contains(word));
+        }
+        for (String prefix : Arrays.asList("aard", "st", "qqq", "")){
+            assertEquals(prefix, root.findWordsBeginningWith(prefix), concurrent.findWordsBeginningWith(prefix));
+        }
+        assertEquals(root.countLeafNotes(), concurrent.countLeafNotes());
+        assertEquals(root.getNumDeeperThan(5), concurrent.getNumDeeperThan(5));
+        assertTrue(concurrent.followPath("aard").getChild('v').getParent() == concurrent.followPath("aard"));
+    }
+
+    @Test
+    public void testOffHeapTrie() throws Exception {
+        ITrie root = readDictionary();
+        ITrie node;
+        try (OffHeapTrie offHeap = new OffHeapTrie()){
+            readDictionary(offHeap);
+            assertEquals(root.streamAllWords().collect(Collectors.toList()), offHeap.streamAllWords().collect(Collectors.toList()));
+            for (String word : Arrays.asList("ably", "phooey", "aardvark", "aardvar", "")){
+                assertEquals(word, root.contains(word), offHeap.contains(word));
+            }
+            for (String prefix : Arrays.asList("aard", "st", "qqq", "")){
+                assertEquals(prefix, root.findWordsBeginningWith(prefix), offHeap.findWordsBeginningWith(prefix));
+            }
+            assertEquals(root.findWordsEndingWith("inging"), offHeap.findWordsEndingWith("inging"));
+            assertEquals(root.findCloseWordsAllChanges("soul", 1), offHeap.findCloseWordsAllChanges("soul", 1));
+            assertEquals(root.countLeafNotes(), offHeap.countLeafNotes());
+            assertEquals(root.getNumDeeperThan(5), offHeap.getNumDeeperThan(5));
+            assertEquals(root.countWordsWithPrefix("st"), offHeap.countWordsWithPrefix("st"));
+            assertEquals(new HashSet<>(Arrays.asList("rk", "rks")), offHeap.followPath("aardvark").getParent().getParent().findWordsBeginningWith("rk"));
+            assertTrue(offHeap.getParent() == null);
+            assertTrue(offHeap.followPath("aard").getChild('v').hasChild('a'));
+            assertTrue(offHeap.offHeapSize() > 0);
+            // a node whose block moves many times, and letters outside the alphabet
+            ITrie many = offHeap.followPath("zz");
+            for (char c = 'A'; c < 'A' + 200; c++){
+                many.insert("x" + c);
+            }
+            for (char c = 'A'; c < 'A' + 200; c++){
+                assertTrue(offHeap.contains("zzx" + c));
+            }
+            assertEquals(200, offHeap.followPath("zzx").countLeafNotes());
+            node = offHeap.followPath("aard");
+        }
+        try {
+            node.contains("vark");
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMeteredTrie() throws Exception {
+        Trie trie = new Trie();
+        MeteredTrie metered = new MeteredTrie(trie);
+        readDictionary(metered);
+        Set<String> words = trie.findAllWords();
+        assertTrue(metered.getOperations().get("insert").getCalls() >= words.size());
+        
+        metered.reset();
+        assertTrue(metered.getOperations().isEmpty());
+        assertTrue(metered.contains("aardvark"));
+        assertFalse(metered.contains("aardvarkz"));
+        MeteredTrie.Stats contains = metered.getOperations().get("contains");
+        assertEquals(2, contains.getCalls());
+        assertEquals(1, contains.getResults());
+        // the root and the nodes of each letter, up to where the second word leaves the trie
+        assertEquals(9 + 10, contains.getNodesVisited());
+        assertTrue(contains.getP50Nanos() <= contains.getP99Nanos());
+        assertTrue(contains.getP99Nanos() <= contains.getMaxNanos());
+        assertTrue(contains.getMaxNanos() <= contains.getTotalNanos());
+        
+        assertEquals(trie.findWordsBeginningWith("aardva"), metered.findWordsBeginningWith("aardva"));
+        assertEquals(2, metered.streamWordsBeginningWith("aardva").count());
+        assertEquals(2, metered.getOperations().get("findWordsBeginningWith").getResults());
+        assertEquals(2, metered.getOperations().get("streamWordsBeginningWith").getResults());
+        assertTrue(metered.getOperations().get("findWordsBeginningWith").getNodesVisited() > 7);
+        
+        // calls that do not go through a MeteredTrie are not counted, even on the trie it wraps
+        Method count = Class.forName("tries.impl.Visits").getDeclaredMethod("count");
+        count.setAccessible(true);
+        Object before = count.invoke(null);
+        assertTrue(trie.contains("aardvark"));
+        assertEquals(2, trie.findWordsBeginningWith("aardva").size());
+        new Trie().insert("aardvark");
+        assertEquals(before, count.invoke(null));
+        
+        assertEquals(trie.findCloseWordsChangedLetters("dog", 1), metered.findCloseWordsChangedLetters("dog", 1));
+        assertEquals(1, metered.getOperations().get("findCloseWordsChangedLetters").getCalls());
+        assertEquals(null, metered.getOperations().get("findCloseWords"));
+        
+        metered.setEnabled(false);
+        assertTrue(metered.contains("aardvark"));
+        assertEquals(2, metered.getOperations().get("contains").getCalls());
+        
+        Trie.MemoryStats memory = metered.getMemoryStats();
+        assertEquals(trie.getNumDeeperThan(-1), memory.getNodes());
+        assertEquals(words.size(), memory.getWords());
+        assertEquals(memory.getNodes(), Arrays.stream(memory.getTableSizes()).sum());
+        assertEquals(memory.getNodes() - 1, memory.getChildSlots() - memory.getEmptySlots());
+        assertTrue(memory.getEstimatedBytes() > 56 * memory.getNodes());
+        
+        ObjectName name = metered.register("dictionary");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(false, server.getAttribute(name, "Enabled"));
+            CompositeData exported = (CompositeData) server.getAttribute(name, "MemoryStats");
+            assertEquals(memory.getNodes(), exported.get("nodes"));
+            TabularData operations = (TabularData) server.getAttribute(name, "Operations");
+            CompositeData row = operations.get(new Object[] { "contains" });
+            assertEquals(2L, ((CompositeData) row.get("value")).get("calls"));
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+        assertEquals(null, new MeteredTrie(new HashMapTrie()).getMemoryStats());
+    }
+
+    @Test
+    public void testCachingTrie() throws Exception {
+        Trie trie = new Trie();
+        CachingTrie cached = new CachingTrie(trie, 1000);
+        readDictionary(cached);
+        
+        Set<String> aardva = cached.findWordsBeginningWith("aardva");
+        assertEquals(trie.findWordsBeginningWith("aardva"), aardva);
+        assertTrue(aardva == cached.findWordsBeginningWith("aardva"));
+        try {
+            aardva.add("aardvaz");
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        Set<String> dog = cached.findCloseWordsChangedLetters("dog", 1);
+        Set<String> ending = cached.findWordsEndingWith("vark");
+        Set<String> containing = cached.findWordsContaining("rdva");
+        Set<String> cat = cached.findWordsBeginningWith("cat");
+        assertEquals(1, cached.getStats().getHits());
+        assertEquals(5, cached.getStats().getMisses());
+        
+        // only the results the new word belongs in are dropped
+        cached.insert("aardvazark");
+        assertEquals(2, cached.getStats().getInvalidations());
+        assertTrue(cat == cached.findWordsBeginningWith("cat"));
+        assertTrue(ending == cached.findWordsEndingWith("vark"));
+        assertTrue(cached.findWordsBeginningWith("aardva").contains("aardvazark"));
+        assertTrue(cached.findWordsContaining("rdva").contains("aardvazark"));
+        assertTrue(cached.findWordsEndingWith("ark").contains("aardvazark"));
+        cached.insert("dot");
+        assertTrue(cached.findCloseWordsChangedLetters("dog", 1).contains("dot"));
+        assertEquals(dog.size(), cached.findCloseWordsChangedLetters("dog", 1).size());
+        cached.insert("dogs");
+        assertEquals(dog.size(), cached.findCloseWordsChangedLetters("dog", 1).size());
+        assertTrue(cached.findCloseWordsAllChanges("dog", 1).contains("dogs"));
+        
+        assertTrue(cached.remove("aardvazark"));
+        assertEquals(aardva, cached.findWordsBeginningWith("aardva"));
+        assertEquals(ending, cached.findWordsEndingWith("vark"));
+        assertEquals(containing, cached.findWordsContaining("rdva"));
+        
+        assertTrue(cached.removeAllWithPrefix("aardv") > 0);
+        assertTrue(cached.findWordsBeginningWith("aardva").isEmpty());
+        assertFalse(cached.findWordsEndingWith("vark").contains("aardvark"));
+        assertEquals(trie.findWordsEndingWith("vark"), cached.findWordsEndingWith("vark"));
+        
+        // the least recently used results make room, and results larger than the cache are not kept
+        CachingTrie small = new CachingTrie(trie, 10);
+        small.topKWithPrefix("ca", 4);
+        small.topKWithPrefix("do", 4);
+        small.topKWithPrefix("ca", 4);
+        small.topKWithPrefix("be", 4);
+        assertEquals(1, small.getStats().getEvictions());
+        assertEquals(10, small.getStats().getWords());
+        small.topKWithPrefix("ca", 4);
+        assertEquals(2, small.getStats().getHits());
+        assertEquals(trie.findAllWords(), small.findAllWords());
+        assertEquals(2, small.getStats().getResults());
+        
+        // the close word presets are answered by the same methods of the wrapped trie
+        HashMapTrie reference = new HashMapTrie();
+        readDictionary(reference);
+        CachingTrie cachedReference = new CachingTrie(reference, 1000);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(reference.findCloseWordsChangedLetters("dog", 1), cachedReference.findCloseWordsChangedLetters("dog", 1));
+            assertEquals(reference.findCloseWordsAddedLetters("dog", 1), cachedReference.findCloseWordsAddedLetters("dog", 1));
+            assertEquals(reference.findCloseWordsRemovedLetters("dogs", 1), cachedReference.findCloseWordsRemovedLetters("dogs", 1));
+            assertEquals(reference.findCloseWordsAllChanges("dog", 1), cachedReference.findCloseWordsAllChanges("dog", 1));
+        }
+        assertEquals(4, cachedReference.getStats().getHits());
+        cachedReference.findCloseWords("dog", 1, EditCosts.CHANGED_LETTERS);
+        assertEquals(5, cachedReference.getStats().getMisses());
+
+        // a distance too large to split the word is cached whole
+        HashMapTrie few = new HashMapTrie();
+        few.insert("cat");
+        few.insert("dog");
+        CachingTrie cachedFew = new CachingTrie(few, 1000);
+        for (EditCosts costs : Arrays.asList(EditCosts.ALL_CHANGES, EditCosts.ALL_CHANGES_AND_TRANSPOSITIONS)) {
+            assertEquals(few.findCloseWords("cat", Integer.MAX_VALUE, costs), cachedFew.findCloseWords("cat", Integer.MAX_VALUE, costs));
+        }
+        cachedFew.insert("cow");
+        assertTrue(cachedFew.findCloseWords("cat", Integer.MAX_VALUE, EditCosts.ALL_CHANGES).contains("cow"));
+    }
+
+    @Test
+    public void testConcurrentTrieStress() throws Exception {
+        List<String> words = new ArrayList<>(readDictionary().findAllWords());
+        Collections.shuffle(words, new Random(7));
+        int writers = 4;
+        int readers = 4;
+        ConcurrentTrie trie = new ConcurrentTrie();
+        // published[w] is how many of writer w's words it has finished inserting
+        AtomicIntegerArray published = new AtomicIntegerArray(writers);
+        AtomicBoolean done = new AtomicBoolean();
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++){
+            int writer = w;
+            threads.add(new Thread(() -> {
+                for (int i = writer; i < words.size(); i += writers){
+                    trie.insert(words.get(i));
+                    published.set(writer, i / writers + 1);
+                }
+            }));
+        }
+        Set<String> dictionary = new HashSet<>(words);
+        for (int r = 0; r < readers; r++){
+            Random random = new Random(r);
+            threads.add(new Thread(() -> {
+                while (!done.get() && errors.isEmpty()){
+                    // a word whose insert has returned must be found, and a word never inserted never is
+                    int writer = random.nextInt(writers);
+                    int count = published.get(writer);
+                    if (count > 0){
+                        String word = words.get(writer + writers * random.nextInt(count));
+                        if (!trie.contains(word)){
+                            errors.add("inserted but not found: " + word);
+                        }
+                        String prefix = word.substring(0, Math.min(3, word.length()));
+                        Set<String> found = trie.findWordsBeginningWith(prefix);
+                        if (!found.contains(word)){
+                            errors.add("inserted but not enumerated: " + word);
+                        }
+                        if (!dictionary.containsAll(found)){
+                            errors.add("enumerated a word never inserted under " + prefix);
+                        }
+                    }
+                    // the dictionary has no digits
+                    if (trie.contains("q" + random.nextInt(1000))){
+                        errors.add("found a word never inserted");
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads){
+            thread.start();
+        }
+        for (int w = 0; w < writers; w++){
+            threads.get(w).join();
+        }
+        done.set(true);
+        for (Thread thread : threads){
+            thread.join();
+        }
+        assertEquals(Collections.emptyList(), errors);
+        assertEquals(dictionary, trie.findAllWords());
+        assertEquals(readDictionary().countLeafNotes(), trie.countLeafNotes());
+    }
+    
+    @Test
+    public void testTrieBuilder() throws Exception {
+        ITrie expected = readDictionary();
+        List<ITrie> built = Arrays.asList(
+                new TrieBuilder().lowerCase(true).build(Paths.get("dictionary.txt")),
+                new TrieBuilder().lowerCase(true).parallel(true).build(Paths.get("dictionary.txt")),
+                new TrieBuilder().build(new StringReader("ant\nants  bee\n\nbee beetle\n")),
+                new TrieBuilder().build(expected.streamAllWords()),
+                new TrieBuilder().parallel(true).build(expected.streamAllWords()));
+        for (ITrie root : Arrays.asList(built.get(0), built.get(1), built.get(3), built.get(4))){
+            assertEquals(expected.findAllWords(), root.findAllWords());
+            assertEquals(expected.countLeafNotes(), root.countLeafNotes());
+            assertEquals(expected.getNumDeeperThan(2), root.getNumDeeperThan(2));
+            assertTrue(root.followPath("aardvark").getParent().getParent() == root.followPath("aardva"));
+        }
+        assertEquals(new HashSet<>(Arrays.asList("ant", "ants", "bee", "beetle")), built.get(2).findAllWords());
+        for (String unsorted : Arrays.asList("dog cat", "dogs dog", "dog Dog")){
+            for (boolean parallel : Arrays.asList(false, true)){
+                try {
+                    new TrieBuilder().parallel(parallel).build(new StringReader(unsorted));
+                    fail(unsorted);
+                } catch (IllegalArgumentException e) {
+                    // expected
+                }
+            }
+        }
+        assertTrue(new TrieBuilder().lowerCase(true).build(new StringReader("dog DOGS")).contains("dogs"));
+    }
+    
+    // HashMapTrie counts by walking every node, so it checks the cached counts
+    private static void assertSameCounts(ITrie expected, ITrie trie) {
+        assertEquals(expected.countLeafNotes(), trie.countLeafNotes());
+        for (int depth = -1; depth < 30; depth++){
+            assertEquals(expected.getNumDeeperThan(depth), trie.getNumDeeperThan(depth));
+        }
+        for (String prefix : Arrays.asList("", "a", "st", "aardw", "qqq", "zymurgy")){
+            assertEquals(expected.countWordsWithPrefix(prefix), trie.countWordsWithPrefix(prefix));
+        }
+        for (String path : Arrays.asList("b", "st", "aard")){
+            ITrie node = trie.followPath(path);
+            if (node != null) {
+                assertEquals(expected.followPath(path).countLeafNotes(), node.countLeafNotes());
+                for (int depth = -1; depth < 6; depth++){
+                    assertEquals(expected.followPath(path).getNumDeeperThan(depth), node.getNumDeeperThan(depth));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCachedCounts() throws Exception {
+        ITrie expected = readDictionary(new HashMapTrie());
+        assertEquals(expected.findWordsBeginningWith("st").size(), expected.countWordsWithPrefix("st"));
+        List<ITrie> tries = Arrays.asList(readDictionary(), readDictionary(new Trie(Trie.Index.SUFFIX)),
+                new TrieBuilder().parallel(true).build(readDictionary().streamAllWords()));
+        for (ITrie trie : tries){
+            assertSameCounts(expected, trie);
+        }
+        // inserting below the root, and the changes that prune nodes
+        for (ITrie trie : Arrays.asList(expected, tries.get(0), tries.get(1), tries.get(2))){
+            trie.followPath("st").insert("ubbornnesses");
+            trie.followPath("b").insert("b");
+            trie.remove("aardvark");
+            trie.remove("aardvarks");
+            trie.remove("zymurgy");
+            trie.removeAllWithPrefix("bu");
+            trie.removeAllWithPrefix("stu");
+        }
+        for (ITrie trie : tries){
+            assertSameCounts(expected, trie);
+        }
+        Trie t = new Trie();
+        assertEquals(0, t.countWordsWithPrefix(""));
+        assertEquals(1, t.getNumDeeperThan(-1));
+        t.insert("");
+        t.insert("ab");
+        t.insert("abc");
+        t.insert("ad");
+        assertEquals(4, t.countWordsWithPrefix(""));
+        assertEquals(3, t.countWordsWithPrefix("a"));
+        assertEquals(2, t.countLeafNotes());
+        assertEquals(1, t.getNumDeeperThan(2));
+        assertEquals(4, t.removeAllWithPrefix(""));
+        assertEquals(0, t.getNumDeeperThan(0));
+        assertEquals(1, t.countLeafNotes());
+    }
+
     @Test
     public void testFindEndsWith() throws Exception {
         ITrie root = readDictionary();
@@ -152,6 +1120,36 @@ public class TestTrie
         }
     }
     
+    @Test
+    public void testFindEndsWithOnlyWords() throws Exception {
+        ITrie root = readDictionary();
+        Set<String> words=root.findWordsEndingWith("var");
+        // "aardvar" is a path in the trie but not a word
+        assertFalse(words.contains("aardvar"));
+        for (String s : words){
+            assertTrue(root.contains(s));
+        }
+    }
+    
+    @Test
+    public void testFindEndsWithSuffixIndex() throws Exception {
+        ITrie plain = readDictionary();
+        ITrie indexed = readDictionary(new Trie(Trie.Index.SUFFIX));
+        for (String suffix : Arrays.asList("inging", "var", "dog", "s", "", "qqq")){
+            assertEquals(plain.findWordsEndingWith(suffix), indexed.findWordsEndingWith(suffix));
+        }
+        assertEquals(49, indexed.findWordsEndingWith("inging").size());
+    }
+    
+    @Test
+    public void testSuffixIndexInsertBelowRoot() throws Exception {
+        ITrie t = new Trie(Trie.Index.SUFFIX);
+        t.insert("dog");
+        t.followPath("do").insert("ve");
+        assertTrue(t.contains("dove"));
+        assertEquals(new HashSet<>(Arrays.asList("dove")), t.findWordsEndingWith("ove"));
+    }
+    
     @Test
     public void testFindContains() throws Exception {
         ITrie root = readDictionary();
@@ -164,6 +1162,146 @@ public class TestTrie
         }
     }
     
+    @Test
+    public void testFindContainsSubstringIndex() throws Exception {
+        ITrie plain = readDictionary();
+        ITrie indexed = readDictionary(new Trie(Trie.Index.SUBSTRING));
+        for (String pattern : Arrays.asList("dog", "d", "og", "ingin", "ness", "aardvarks", "", "qqq", "dogx")){
+            assertEquals(plain.findWordsContaining(pattern), indexed.findWordsContaining(pattern));
+        }
+        assertEquals(224, indexed.findWordsContaining("dog").size());
+    }
+    
+    @Test
+    public void testFindWordsMatching() throws Exception {
+        ITrie trie = readDictionary();
+        ITrie hashMapTrie = readDictionary(new HashMapTrie());
+        Set<String> all = trie.findAllWords();
+        String[][] patterns = {
+                { "d?g*", "d.g.*" },
+                { "*ing", ".*ing" },
+                { "c[aeiou]t", "c[aeiou]t" },
+                { "[!a-y]*[^e]", "[^a-y].*[^e]" },
+                { "*q*u*", ".*q.*u.*" },
+                { "a*a*a*a*a", "a.*a.*a.*a.*a" },
+                { "??????????????????????????", ".{26}" },
+                { "*", ".*" },
+                { "xyzzy*", "xyzzy.*" },
+        };
+        for (String[] pattern : patterns) {
+            Pattern regex = Pattern.compile(pattern[1]);
+            Set<String> expected = all.stream().filter(word -> regex.matcher(word).matches()).collect(Collectors.toSet());
+            assertEquals(pattern[0], expected, trie.findWordsMatching(pattern[0]));
+            assertEquals(pattern[0], expected, hashMapTrie.findWordsMatching(pattern[0]));
+            Set<String> between = expected.stream().filter(word -> word.length() >= 5 && word.length() <= 7).collect(Collectors.toSet());
+            assertEquals(pattern[0], between, trie.findWordsMatching(pattern[0], 5, 7));
+            assertEquals(pattern[0], between, hashMapTrie.findWordsMatching(pattern[0], 5, 7));
+        }
+        assertEquals(new HashSet<>(Arrays.asList("dog", "dig", "dug")), trie.findWordsMatching("d[a-z]g").stream()
+                .filter(word -> word.equals("dog") || word.equals("dig") || word.equals("dug")).collect(Collectors.toSet()));
+        assertEquals(trie.findWordsMatching("c?t"), trie.findWordsMatching("c*", 3, 3).stream()
+                .filter(word -> word.charAt(2) == 't').collect(Collectors.toSet()));
+        assertTrue(trie.findWordsMatching("*", 40, 50).isEmpty());
+        assertTrue(trie.findWordsMatching("d?g", 4, 10).isEmpty());
+        assertEquals(Arrays.asList("aardvark", "aardvarks"), trie.streamWordsMatching("aardv*", 0, 9).collect(Collectors.toList()));
+        
+        // a path below the root only matches the rest of its words
+        assertEquals(trie.findWordsBeginningWith("aardv").stream().map(word -> word.substring(5)).collect(Collectors.toSet()),
+                trie.followPath("aardv").findWordsMatching("*"));
+    }
+    
+    @Test
+    public void testWordPattern() throws Exception {
+        assertTrue(WordPattern.compile("a\\*b").matches("a*b"));
+        assertFalse(WordPattern.compile("a\\*b").matches("axb"));
+        assertTrue(WordPattern.compile("[]x]").matches("]"));
+        assertTrue(WordPattern.compile("[a-]").matches("-"));
+        assertTrue(WordPattern.compile("").matches(""));
+        assertFalse(WordPattern.compile("").matches("a"));
+        assertTrue(WordPattern.compile("**").matches(""));
+        assertTrue(WordPattern.compile("?\u00e9*").matches("c\u00e9s"));
+        assertFalse(WordPattern.compile("[!\u00e9]").matches("\u00e9"));
+        assertEquals(3, WordPattern.compile("*a?*[bc]*").getMinLength());
+        assertEquals(Integer.MAX_VALUE, WordPattern.compile("*a").getMaxLength());
+        assertEquals(2, WordPattern.compile("a?").getMaxLength());
+        StringBuilder longest = new StringBuilder();
+        for (int i = 0; i < 63; i++) {
+            longest.append('?');
+        }
+        assertTrue(WordPattern.compile(longest + "*").matches(longest.toString().replace('?', 'x') + "yz"));
+        for (String bad : new String[] { "[abc", "abc\\", longest + "?", "[a\\" }) {
+            try {
+                WordPattern.compile(bad);
+                fail(bad);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+    
+    @Test
+    public void testAhoCorasick() throws Exception {
+        ITrie trie = readDictionary();
+        AhoCorasick automaton = AhoCorasick.compile(trie);
+        assertEquals(trie.getNumDeeperThan(-1), automaton.getStates());
+        List<String> words = new ArrayList<>(trie.findAllWords());
+        Random random = new Random(11);
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 5000) {
+            builder.append(words.get(random.nextInt(words.size())));
+            builder.append(" ,\nX-\u00e9".charAt(random.nextInt(6)));
+        }
+        String text = builder.toString();
+        // every substring that is a word, as start:end:word
+        Set<String> expected = new HashSet<>();
+        for (int end = 1; end <= text.length(); end++) {
+            for (int start = Math.max(0, end - 40); start < end; start++) {
+                if (trie.contains(text.substring(start, end))) {
+                    expected.add(start + ":" + end + ":" + text.substring(start, end));
+                }
+            }
+        }
+        Set<String> found = new HashSet<>();
+        long[] previousEnd = { 0 };
+        long count = automaton.scan(text, (start, end, word) -> {
+            assertTrue(end >= previousEnd[0]);
+            previousEnd[0] = end;
+            assertTrue(found.add(start + ":" + end + ":" + automaton.getWord(word)));
+        });
+        assertEquals(expected, found);
+        assertEquals(expected.size(), count);
+        
+        // a buffer that does not start at the beginning of its array
+        char[] padded = ("zz" + text + "zz").toCharArray();
+        Set<String> fromBuffer = new HashSet<>();
+        CharBuffer buffer = CharBuffer.wrap(padded, 2, text.length()).slice();
+        automaton.scan(buffer, (start, end, word) -> fromBuffer.add(start + ":" + end + ":" + automaton.getWord(word)));
+        assertEquals(expected, fromBuffer);
+        assertEquals(0, buffer.position());
+        
+        // a reader that hands out a few characters at a time, so words span its reads
+        Reader trickle = new StringReader(text) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, 3));
+            }
+        };
+        Set<String> fromReader = new HashSet<>();
+        automaton.scan(trickle, (start, end, word) -> fromReader.add(start + ":" + end + ":" + automaton.getWord(word)));
+        assertEquals(expected, fromReader);
+        
+        AhoCorasick copied = AhoCorasick.compile(readDictionary(new HashMapTrie()));
+        assertEquals(count, copied.scan(text, (start, end, word) -> {}));
+        
+        ITrie small = new Trie();
+        for (String word : new String[] { "he", "she", "his", "hers" }) {
+            small.insert(word);
+        }
+        List<String> matches = new ArrayList<>();
+        AhoCorasick.compile(small).scan("ushers", (start, end, word) -> matches.add(start + "-" + end));
+        assertEquals(Arrays.asList("1-4", "2-4", "2-6"), matches);
+    }
+    
     @Test
     public void testCloseWordsChangedLetters() throws Exception {
         ITrie root = readDictionary();
@@ -239,6 +1377,116 @@ public class TestTrie
         }
     }
     
+    // edit distance by the textbook dynamic programming table
+    private static int editDistance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++){
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++){
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++){
+            for (int j = 1; j <= b.length(); j++){
+                int change = d[i-1][j-1] + (a.charAt(i-1) == b.charAt(j-1) ? 0 : 1);
+                d[i][j] = Math.min(change, Math.min(d[i-1][j] + 1, d[i][j-1] + 1));
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+    
+    @Test
+    public void testCloseWordsAllChangesMatchesEditDistance() throws Exception {
+        ITrie root = readDictionary();
+        Set<String> all = root.findAllWords();
+        for (String word : Arrays.asList("soul", "dance", "aardvark", "xyzzy", "a")){
+            for (int dist = 0; dist <= 2; dist++){
+                Set<String> expected = new HashSet<>();
+                for (String s : all){
+                    if (editDistance(word, s) <= dist){
+                        expected.add(s);
+                    }
+                }
+                assertEquals(word + " " + dist, expected, root.findCloseWordsAllChanges(word, dist));
+            }
+        }
+    }
+    
+    @Test
+    public void testCloseWordsCostModels() throws Exception {
+        ITrie root = readDictionary();
+        // the default findCloseWords compares against every word
+        ITrie bruteForce = readDictionary(new HashMapTrie());
+        EditCosts weighted = new EditCosts(2, 1, 3, EditCosts.DISABLED);
+        EditCosts swapsOnly = new EditCosts(EditCosts.DISABLED, EditCosts.DISABLED, EditCosts.DISABLED, 1);
+        for (EditCosts costs : Arrays.asList(EditCosts.CHANGED_LETTERS, EditCosts.ADDED_LETTERS,
+                EditCosts.REMOVED_LETTERS, EditCosts.ALL_CHANGES_AND_TRANSPOSITIONS, weighted, swapsOnly)){
+            for (String word : Arrays.asList("soul", "dgo", "aardvark")){
+                assertEquals(word, bruteForce.findCloseWords(word, 2, costs), root.findCloseWords(word, 2, costs));
+            }
+        }
+        // and the presets of HashMapTrie are the same searches
+        for (String word : Arrays.asList("soul", "dgo", "st")){
+            assertEquals(word, root.findCloseWords(word, 2, EditCosts.CHANGED_LETTERS), bruteForce.findCloseWordsChangedLetters(word, 2));
+            assertEquals(word, root.findCloseWords(word, 2, EditCosts.ADDED_LETTERS), bruteForce.findCloseWordsAddedLetters(word, 2));
+            assertEquals(word, root.findCloseWords(word, 2, EditCosts.REMOVED_LETTERS), bruteForce.findCloseWordsRemovedLetters(word, 2));
+            assertEquals(word, root.findCloseWords(word, 2, EditCosts.ALL_CHANGES), bruteForce.findCloseWordsAllChanges(word, 2));
+        }
+        assertTrue(root.findCloseWords("dgo", 1, swapsOnly).contains("dog"));
+        assertFalse(root.findCloseWords("dgo", 1, EditCosts.ALL_CHANGES).contains("dog"));
+    }
+
+    @Test
+    public void testCloseWordsUnboundedDistance() throws Exception {
+        ITrie trie = new Trie();
+        ITrie expected = new HashMapTrie();
+        for (String word : Arrays.asList("a", "cat", "dog", "aardvark")){
+            trie.insert(word);
+            expected.insert(word);
+        }
+        // a distance past any path in the trie finds everything the costs allow
+        assertEquals(expected.findCloseWordsAddedLetters("a", Integer.MAX_VALUE), trie.findCloseWordsAddedLetters("a", Integer.MAX_VALUE));
+        assertEquals(expected.findAllWords(), trie.findCloseWords("a", Integer.MAX_VALUE, EditCosts.ALL_CHANGES));
+        assertEquals(expected.findAllWords(), trie.findCloseWords("cat", Integer.MAX_VALUE - 1, EditCosts.ALL_CHANGES_AND_TRANSPOSITIONS));
+    }
+
+    @Test
+    public void testCloseWordsAllTries() throws Exception {
+        ITrie root = readDictionary();
+        Set<String> all = root.findAllWords();
+        Path file = Files.createTempFile("dictionary", ".trie");
+        try (OffHeapTrie offHeap = new OffHeapTrie()){
+            MappedTrie.write(root, file);
+            readDictionary(offHeap);
+            List<ITrie> tries = Arrays.asList(new Dawg(root), MappedTrie.open(file), offHeap,
+                    readDictionary(new RadixTrie()), readDictionary(new ConcurrentTrie()), PersistentTrie.of(root));
+            List<EditCosts> costs = Arrays.asList(EditCosts.CHANGED_LETTERS, EditCosts.ADDED_LETTERS, EditCosts.REMOVED_LETTERS,
+                    EditCosts.ALL_CHANGES_AND_TRANSPOSITIONS, new EditCosts(2, 1, 3, 1));
+            for (String word : Arrays.asList("soul", "dgo", "aardvark", "")){
+                for (EditCosts cost : costs){
+                    Set<String> expected = new HashSet<>();
+                    for (String candidate : all){
+                        if (cost.distance(word, candidate) <= 2){
+                            expected.add(candidate);
+                        }
+                    }
+                    for (ITrie trie : tries){
+                        assertEquals(trie.getClass().getSimpleName() + " " + word, expected, trie.findCloseWords(word, 2, cost));
+                    }
+                }
+            }
+            for (ITrie trie : tries){
+                assertEquals(root.findCloseWordsAllChanges("soul", 1), trie.findCloseWordsAllChanges("soul", 1));
+                assertEquals(Collections.emptySet(), trie.findCloseWords("soul", -1, EditCosts.ALL_CHANGES));
+            }
+            // below a position inside a RadixTrie edge the words start with the rest of the edge
+            assertEquals(root.followPath("aardv").findCloseWordsAllChanges("ak", 1),
+                    tries.get(3).followPath("aardv").findCloseWordsAllChanges("ak", 1));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
     @Test
     public void testCountLeafNotes() throws Exception {
     	ITrie t = new Trie();
@@ -0,0 +1,141 @@
+package tries;
+
+/**
+ * The cost model for {@link ITrie#findCloseWords(String, int, EditCosts)}.
+ * Each kind of edit has a positive cost, or is {@link #DISABLED} and never
+ * allowed. Edits are counted from the given word to a word in the ITrie, so
+ * an added letter is one that the found word has and the given word lacks.
+ *
+ * A transposition swaps two adjacent letters, such as "dgo" to "dog". Letters
+ * that took part in a transposition are not edited again (this is the
+ * "optimal string alignment" variant of the Damerau-Levenshtein distance).
+ */
+public final class EditCosts
+{
+    /**
+     * The cost of an edit that is not allowed.
+     */
+    public static final int DISABLED = -1;
+
+    /**
+     * Only changed letters, each costing 1.
+     */
+    public static final EditCosts CHANGED_LETTERS = new EditCosts(1, DISABLED, DISABLED, DISABLED);
+
+    /**
+     * Only added letters, each costing 1.
+     */
+    public static final EditCosts ADDED_LETTERS = new EditCosts(DISABLED, 1, DISABLED, DISABLED);
+
+    /**
+     * Only removed letters, each costing 1.
+     */
+    public static final EditCosts REMOVED_LETTERS = new EditCosts(DISABLED, DISABLED, 1, DISABLED);
+
+    /**
+     * Changed, added and removed letters, each costing 1 (the Levenshtein distance).
+     */
+    public static final EditCosts ALL_CHANGES = new EditCosts(1, 1, 1, DISABLED);
+
+    /**
+     * Changed, added and removed letters and transpositions, each costing 1.
+     */
+    public static final EditCosts ALL_CHANGES_AND_TRANSPOSITIONS = new EditCosts(1, 1, 1, 1);
+
+    private final int changed;
+    private final int added;
+    private final int removed;
+    private final int transposed;
+
+    /**
+     * Create a cost model from the cost of each kind of edit. Every cost
+     * must be positive or {@link #DISABLED}.
+     * @param changed
+     * @param added
+     * @param removed
+     * @param transposed
+     */
+    public EditCosts(int changed, int added, int removed, int transposed) {
+        this.changed = check(changed);
+        this.added = check(added);
+        this.removed = check(removed);
+        this.transposed = check(transposed);
+    }
+
+    private static int check(int cost) {
+        if (cost <= 0 && cost != DISABLED) {
+            throw new IllegalArgumentException("Edit costs must be positive or DISABLED: " + cost);
+        }
+        return cost;
+    }
+
+    public int getChanged() {
+        return changed;
+    }
+
+    public int getAdded() {
+        return added;
+    }
+
+    public int getRemoved() {
+        return removed;
+    }
+
+    public int getTransposed() {
+        return transposed;
+    }
+
+    /**
+     * Return the cheapest cost of editing word into other, or
+     * Integer.MAX_VALUE if the allowed edits cannot turn one into the other.
+     * @param word
+     * @param other
+     * @return
+     */
+    public int distance(String word, String other) {
+        long infinity = Long.MAX_VALUE / 4;
+        long change = changed == DISABLED ? infinity : changed;
+        long add = added == DISABLED ? infinity : added;
+        long remove = removed == DISABLED ? infinity : removed;
+        long transpose = transposed == DISABLED ? infinity : transposed;
+        // d[i][j] is the cost of editing the first j letters of word into the first i letters of other
+        long[][] d = new long[other.length() + 1][word.length() + 1];
+        for (int i = 0; i <= other.length(); i++) {
+            for (int j = 0; j <= word.length(); j++) {
+                long best = i == 0 && j == 0 ? 0 : infinity;
+                if (i > 0) {
+                    best = Math.min(best, d[i - 1][j] + add);
+                }
+                if (j > 0) {
+                    best = Math.min(best, d[i][j - 1] + remove);
+                }
+                if (i > 0 && j > 0) {
+                    boolean same = other.charAt(i - 1) == word.charAt(j - 1);
+                    best = Math.min(best, d[i - 1][j - 1] + (same ? 0 : change));
+                }
+                if (i > 1 && j > 1 && other.charAt(i - 1) == word.charAt(j - 2)
+                        && other.charAt(i - 2) == word.charAt(j - 1)) {
+                    best = Math.min(best, d[i - 2][j - 2] + transpose);
+                }
+                d[i][j] = Math.min(best, infinity);
+            }
+        }
+        long result = d[other.length()][word.length()];
+        return (int) Math.min(result, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof EditCosts)) {
+            return false;
+        }
+        EditCosts costs = (EditCosts) other;
+        return changed == costs.changed && added == costs.added && removed == costs.removed
+                && transposed == costs.transposed;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((changed * 31 + added) * 31 + removed) * 31 + transposed;
+    }
+}
@@ -1,6 +1,13 @@
 package tries;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Interface for a Trie data structure that stores a compressed dictionary of words.
@@ -21,6 +28,62 @@ public interface ITrie
      */
     public void insert(String word);
     
+    /**
+     * Insert the characters of the given sequence from index from (inclusive)
+     * to index to (exclusive) into the ITrie as a word.
+     * @param word
+     * @param from
+     * @param to
+     */
+    public default void insert(CharSequence word, int from, int to) {
+        insert(word.subSequence(from, to).toString());
+    }
+    
+    /**
+     * Insert the given word into the ITrie with a weight, such as how often
+     * the word is used. Inserting a word again replaces its weight. Weights
+     * must not be negative, and words inserted without one weigh 0.
+     * The default implementation does not keep weights.
+     * @param word
+     * @param weight
+     */
+    public default void insert(String word, int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weights must not be negative: " + weight);
+        }
+        insert(word);
+    }
+    
+    /**
+     * Remove the given word from the ITrie. Nodes that are left with no word
+     * at or below them are removed as well, so the ITrie looks as if the word
+     * had never been inserted.
+     * The default implementation does not support removal.
+     * @param word
+     * @return true if the word was in the ITrie
+     */
+    public default boolean remove(String word) {
+        throw new UnsupportedOperationException("This ITrie does not support remove");
+    }
+    
+    /**
+     * Remove every word that begins with the given prefix, including the
+     * prefix itself if it is a word.
+     * The default implementation removes the words one at a time.
+     * @param prefix
+     * @return the number of words removed
+     */
+    public default int removeAllWithPrefix(String prefix) {
+        if (followPath(prefix) == null) {
+            return 0;
+        }
+        List<String> words = new ArrayList<>(findWordsBeginningWith(prefix));
+        for (String word : words) {
+            remove(word);
+        }
+        return words.size();
+    }
+    
     /**
      * Return true if the current node has a child node labeled with the given
      * letter, and false otherwise.
@@ -51,6 +114,20 @@ public interface ITrie
      * @return
      */
     public ITrie followPath(String path);
+    
+    /**
+     * Follow the characters of the given sequence from index from (inclusive)
+     * to index to (exclusive), and return the ITrie node. If no such node exists,
+     * return null. Implementations should walk the range in place, without
+     * creating a String for it.
+     * @param path
+     * @param from
+     * @param to
+     * @return
+     */
+    public default ITrie followPath(CharSequence path, int from, int to) {
+        return followPath(path.subSequence(from, to).toString());
+    }
 
     /**
      * Return true if the Trie contains the given word, and false otherwise.
@@ -59,6 +136,71 @@ public interface ITrie
      */
     public boolean contains(String word);
     
+    /**
+     * Return true if the Trie contains the word made of the characters of the
+     * given sequence from index from (inclusive) to index to (exclusive), and
+     * false otherwise. Implementations should walk the range in place, without
+     * creating a String for it.
+     * @param word
+     * @param from
+     * @param to
+     * @return
+     */
+    public default boolean contains(CharSequence word, int from, int to) {
+        return contains(word.subSequence(from, to).toString());
+    }
+    
+    /**
+     * Look up a batch of words at once, setting found[i] to whether the Trie
+     * contains words[i]. Implementations can share the walk along a common
+     * prefix between the words instead of starting each one from the root.
+     * The default implementation calls contains for each word.
+     * @param words
+     * @param found
+     */
+    public default void containsBatch(String[] words, boolean[] found) {
+        if (found.length < words.length) {
+            throw new IllegalArgumentException("Too few results for " + words.length + " words: " + found.length);
+        }
+        for (int i = 0; i < words.length; i++) {
+            found[i] = contains(words[i]);
+        }
+    }
+    
+    /**
+     * Return true if the Trie contains every one of the given words, looking
+     * them up as one batch.
+     * @param words
+     * @return
+     */
+    public default boolean containsAll(Collection<String> words) {
+        String[] batch = words.toArray(new String[0]);
+        boolean[] found = new boolean[batch.length];
+        containsBatch(batch, found);
+        for (boolean contained : found) {
+            if (!contained) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Follow a batch of paths at once, setting nodes[i] to the node that
+     * followPath(paths[i]) returns.
+     * The default implementation calls followPath for each path.
+     * @param paths
+     * @param nodes
+     */
+    public default void followPathBatch(String[] paths, ITrie[] nodes) {
+        if (nodes.length < paths.length) {
+            throw new IllegalArgumentException("Too few results for " + paths.length + " paths: " + nodes.length);
+        }
+        for (int i = 0; i < paths.length; i++) {
+            nodes[i] = followPath(paths[i]);
+        }
+    }
+    
     /**
      * Return a set of all words in the ITrie. Implement this method recursively.
      * It may be helpful to use a private helper method with the following signature:
@@ -74,6 +216,17 @@ public interface ITrie
      */
     public Set<String> findAllWords();
     
+    /**
+     * Return all words in the ITrie as a lazy stream in alphabetical order.
+     * Words are only found as the stream is consumed, so limit() and other
+     * short-circuiting operations do not visit the rest of the ITrie.
+     * The default implementation sorts the result of findAllWords().
+     * @return
+     */
+    public default Stream<String> streamAllWords() {
+        return findAllWords().stream().sorted();
+    }
+    
     /**
      * Return a set of all words that begin with the given prefix.
      * It may be helpful to implement this using a helper method
@@ -93,6 +246,94 @@ public interface ITrie
      */
     public Set<String> findWordsBeginningWith(String prefix);
     
+    /**
+     * Return the words that begin with the given prefix as a lazy stream in
+     * alphabetical order.
+     * The default implementation sorts the result of findWordsBeginningWith(prefix).
+     * @param prefix
+     * @return
+     */
+    public default Stream<String> streamWordsBeginningWith(String prefix) {
+        if (followPath(prefix) == null) {
+            return Stream.empty();
+        }
+        return findWordsBeginningWith(prefix).stream().sorted();
+    }
+    
+    /**
+     * Return the words that begin with the given prefix and come after the
+     * given word in alphabetical order, as a lazy stream in alphabetical order.
+     * This pages through a large result: passing the last word of one page as
+     * after returns the words of the following pages.
+     * @param prefix
+     * @param after
+     * @return
+     */
+    public default Stream<String> streamWordsBeginningWith(String prefix, String after) {
+        return streamWordsBeginningWith(prefix).filter(word -> word.compareTo(after) > 0);
+    }
+    
+    /**
+     * Return the k heaviest words that begin with the given prefix, heaviest
+     * first, with words of the same weight in alphabetical order. Return
+     * fewer than k words if there are not that many.
+     * 
+     * The default implementation sorts every word beginning with the prefix
+     * and treats them all as weighing 0. Implementations that keep weights
+     * should stop as soon as k words are found.
+     * 
+     * @param prefix
+     * @param k
+     * @return
+     */
+    public default List<String> topKWithPrefix(String prefix, int k) {
+        if (k <= 0 || followPath(prefix) == null) {
+            return new ArrayList<>();
+        }
+        List<String> words = new ArrayList<>(findWordsBeginningWith(prefix));
+        Collections.sort(words);
+        return new ArrayList<>(words.subList(0, Math.min(k, words.size())));
+    }
+    
+    /**
+     * Return a set of all words that match the given glob pattern, where ?
+     * stands for any one letter, * for any number of letters and [abc] for
+     * one of a class of letters. See {@link WordPattern} for the details.
+     * @param pattern
+     * @return
+     */
+    public default Set<String> findWordsMatching(String pattern) {
+        return findWordsMatching(pattern, 0, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Return a set of all words that match the given glob pattern and have
+     * between minLength and maxLength letters, inclusive.
+     * @param pattern
+     * @param minLength
+     * @param maxLength
+     * @return
+     */
+    public default Set<String> findWordsMatching(String pattern, int minLength, int maxLength) {
+        return streamWordsMatching(pattern, minLength, maxLength).collect(Collectors.toSet());
+    }
+    
+    /**
+     * Return the words that match the given glob pattern and have between
+     * minLength and maxLength letters as a lazy stream. The default
+     * implementation checks every word against the pattern; implementations
+     * should only visit the paths that the pattern can still match.
+     * @param pattern
+     * @param minLength
+     * @param maxLength
+     * @return
+     */
+    public default Stream<String> streamWordsMatching(String pattern, int minLength, int maxLength) {
+        WordPattern compiled = WordPattern.compile(pattern);
+        return streamAllWords()
+                .filter(word -> word.length() >= minLength && word.length() <= maxLength && compiled.matches(word));
+    }
+    
     /**
      * Return a set of all words containing the given pattern as a substring.
      * This pattern can occur anywhere inside the String. It may be helpful to
@@ -111,6 +352,16 @@ public interface ITrie
      */
     public Set<String> findWordsContaining(String pattern);
     
+    /**
+     * Return the words containing the given pattern as a lazy stream, in no
+     * particular order.
+     * @param pattern
+     * @return
+     */
+    public default Stream<String> streamWordsContaining(String pattern) {
+        return findWordsContaining(pattern).stream();
+    }
+    
     /**
      * Return a set of all words in the Trie that end with the given suffix.
      * You may want to approach this using a private recursive helper method 
@@ -128,6 +379,16 @@ public interface ITrie
      */
     public Set<String> findWordsEndingWith(String suffix);
     
+    /**
+     * Return the words that end with the given suffix as a lazy stream, in no
+     * particular order.
+     * @param suffix
+     * @return
+     */
+    public default Stream<String> streamWordsEndingWith(String suffix) {
+        return findWordsEndingWith(suffix).stream();
+    }
+    
     /**
      * Return a set of all words that are within the given number of edits
      * of the given word, where edits are only allowed to be changed letters.
@@ -194,6 +455,55 @@ public interface ITrie
      */
     public Set<String> findCloseWordsAllChanges(String word, int distance);
     
+    /**
+     * Return a set of all words that can be reached from the given word with
+     * edits whose total cost under the given cost model is at most distance.
+     * The four findCloseWords methods above are this search with the
+     * EditCosts CHANGED_LETTERS, ADDED_LETTERS, REMOVED_LETTERS and ALL_CHANGES.
+     * 
+     * The default implementation compares the word against every word in the
+     * ITrie, so implementations should override it with a search that prunes
+     * subtrees that are already too far away.
+     * 
+     * @param word
+     * @param distance
+     * @param costs
+     * @return
+     */
+    public default Set<String> findCloseWords(String word, int distance, EditCosts costs) {
+        Set<String> words = new HashSet<>();
+        for (String candidate : findAllWords()) {
+            if (costs.distance(word, candidate) <= distance) {
+                words.add(candidate);
+            }
+        }
+        return words;
+    }
+    
+    /**
+     * Return the words that findCloseWords(word, distance, costs) would
+     * return, as a lazy stream in no particular order.
+     * @param word
+     * @param distance
+     * @param costs
+     * @return
+     */
+    public default Stream<String> streamCloseWords(String word, int distance, EditCosts costs) {
+        return findCloseWords(word, distance, costs).stream();
+    }
+    
+    /**
+     * Return the number of words that begin with the given prefix, including
+     * the prefix itself if it is a word.
+     * The default implementation enumerates them.
+     * @param prefix
+     * @return
+     */
+    public default int countWordsWithPrefix(String prefix) {
+        ITrie node = followPath(prefix);
+        return node == null ? 0 : (int) node.streamAllWords().count();
+    }
+    
     /*
      * Counts the number of leaf nodes (i.e. nodes with no children) in a Trie.
      */
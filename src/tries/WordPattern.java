@@ -0,0 +1,217 @@
+package tries;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compiled glob pattern for {@link ITrie#findWordsMatching(String)}. In a
+ * pattern, ? matches any one letter, * matches any number of letters
+ * including none, [abc] matches one of the listed letters, [a-z] one of a
+ * range, and [!abc] or [^abc] any letter not listed. A backslash makes the
+ * next character stand for itself. Everything else matches only itself, and
+ * the whole word has to match.
+ *
+ * The pattern is compiled into an automaton whose set of states fits in a
+ * long, one bit for each position in the pattern. A trie can run it one
+ * letter at a time down each path with {@link #step(long, char)}, and skip
+ * the subtree below a path as soon as the states are empty, which happens as
+ * soon as no word starting with the path can match.
+ */
+public final class WordPattern
+{
+    /*
+     * State i means the first i letters, ? and classes of the pattern have
+     * been matched. A star before position i lets state i read any letter and
+     * stay where it is, so the states fit in the bits of a long.
+     */
+    private static final int MAX_POSITIONS = Long.SIZE - 1;
+    private static final int ASCII = 128;
+
+    private final String pattern;
+    // what each position matches: a single letter, ranges of letters, or any letter
+    private final char[][] ranges;
+    private final boolean[] negated;
+    // positions with a star before them, which stay active on any letter
+    private final long stars;
+    private final long accepting;
+    private final long start;
+    // masks[c] is the positions whose letter, ? or class matches the ASCII letter c
+    private final long[] masks = new long[ASCII];
+    private final int minLength;
+    private final int maxLength;
+
+    private WordPattern(String pattern, List<char[]> ranges, List<Boolean> negated, long stars) {
+        this.pattern = pattern;
+        int positions = ranges.size();
+        this.ranges = ranges.toArray(new char[positions][]);
+        this.negated = new boolean[positions];
+        for (int i = 0; i < positions; i++) {
+            this.negated[i] = negated.get(i);
+        }
+        this.stars = stars;
+        this.accepting = 1L << positions;
+        this.start = 1L;
+        for (char c = 0; c < ASCII; c++) {
+            masks[c] = computeMask(c);
+        }
+        this.minLength = positions;
+        this.maxLength = stars == 0 ? positions : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Compile the given glob pattern.
+     * @param pattern
+     * @return
+     * @throws IllegalArgumentException if a [ is not closed, the pattern ends
+     *         with a backslash, or it has more than 63 letters, ? and classes
+     */
+    public static WordPattern compile(String pattern) {
+        List<char[]> ranges = new ArrayList<>();
+        List<Boolean> negated = new ArrayList<>();
+        long stars = 0;
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i++);
+            if (c == '*') {
+                // a run of stars is the same as one
+                stars |= 1L << ranges.size();
+                continue;
+            }
+            if (ranges.size() == MAX_POSITIONS) {
+                throw new IllegalArgumentException("Patterns can have at most " + MAX_POSITIONS
+                        + " letters, ? and classes: " + pattern);
+            }
+            if (c == '?') {
+                ranges.add(null);
+                negated.add(false);
+            } else if (c == '[') {
+                boolean not = i < pattern.length() && (pattern.charAt(i) == '!' || pattern.charAt(i) == '^');
+                if (not) {
+                    i++;
+                }
+                StringBuilder letters = new StringBuilder();
+                // a ] straight after the [ is a letter of the class
+                boolean first = true;
+                while (true) {
+                    if (i == pattern.length()) {
+                        throw new IllegalArgumentException("Unclosed [ in pattern: " + pattern);
+                    }
+                    char letter = pattern.charAt(i++);
+                    if (letter == ']' && !first) {
+                        break;
+                    }
+                    first = false;
+                    if (letter == '\\') {
+                        letter = escaped(pattern, i++);
+                    }
+                    char last = letter;
+                    if (i + 1 < pattern.length() && pattern.charAt(i) == '-' && pattern.charAt(i + 1) != ']') {
+                        last = pattern.charAt(i + 1);
+                        i = i + 2;
+                        if (last == '\\') {
+                            last = escaped(pattern, i++);
+                        }
+                    }
+                    letters.append(letter).append(last);
+                }
+                ranges.add(letters.toString().toCharArray());
+                negated.add(not);
+            } else {
+                if (c == '\\') {
+                    c = escaped(pattern, i++);
+                }
+                ranges.add(new char[] { c, c });
+                negated.add(false);
+            }
+        }
+        return new WordPattern(pattern, ranges, negated, stars);
+    }
+
+    private static char escaped(String pattern, int i) {
+        if (i >= pattern.length()) {
+            throw new IllegalArgumentException("Pattern ends with a backslash: " + pattern);
+        }
+        return pattern.charAt(i);
+    }
+
+    private long computeMask(char c) {
+        long mask = 0;
+        for (int i = 0; i < ranges.length; i++) {
+            if (matches(i, c)) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    private boolean matches(int position, char c) {
+        char[] range = ranges[position];
+        if (range == null) {
+            return true;
+        }
+        boolean found = false;
+        for (int i = 0; i < range.length && !found; i += 2) {
+            found = range[i] <= c && c <= range[i + 1];
+        }
+        return found != negated[position];
+    }
+
+    /**
+     * @return the states before any letter has been read
+     */
+    public long start() {
+        return start;
+    }
+
+    /**
+     * Return the states after reading the given letter in the given states.
+     * The result is 0 when no word that continues this way can match.
+     * @param states
+     * @param letter
+     * @return
+     */
+    public long step(long states, char letter) {
+        long mask = letter < ASCII ? masks[letter] : computeMask(letter);
+        return (states & stars) | (states & mask) << 1;
+    }
+
+    /**
+     * @param states
+     * @return whether the letters read so far match the whole pattern
+     */
+    public boolean accepts(long states) {
+        return (states & accepting) != 0;
+    }
+
+    /**
+     * @param word
+     * @return whether the whole word matches the pattern
+     */
+    public boolean matches(CharSequence word) {
+        long states = start;
+        for (int i = 0; i < word.length() && states != 0; i++) {
+            states = step(states, word.charAt(i));
+        }
+        return accepts(states);
+    }
+
+    /**
+     * @return the length of the shortest word that can match
+     */
+    public int getMinLength() {
+        return minLength;
+    }
+
+    /**
+     * @return the length of the longest word that can match, or
+     *         Integer.MAX_VALUE if the pattern has a *
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
@@ -0,0 +1,127 @@
+package tries.impl;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import tries.EditCosts;
+import tries.ITrie;
+
+/**
+ * What the tries that enumerate their words as sorted streams have in
+ * common. The set methods collect the streams, the substring and suffix
+ * queries filter every word, and the close word presets are findCloseWords
+ * with the matching EditCosts. Subclasses implement words, which walks
+ * their nodes, and override whatever else they can do better. The close
+ * word searches walk the same nodes, keeping a row of edit costs for each
+ * letter of the path and skipping the subtrees that are already too far
+ * away.
+ */
+public abstract class AbstractTrie implements ITrie {
+	// the characteristics of a stream of the words below a node
+	static final int SORTED_WORDS = Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL
+			| Spliterator.SORTED;
+
+	static Stream<String> stream(Iterator<String> words, int characteristics) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(words, characteristics), false);
+	}
+
+	static Set<String> toSet(Stream<String> words) {
+		return new HashSet<>(words.collect(Collectors.toList()));
+	}
+
+	/*
+	 * Return an enumeration of the words that start with the given prefix,
+	 * or null if there are none.
+	 */
+	abstract WordIterator<?, ?> words(String prefix);
+
+	/*
+	 * Return the characteristics of a stream of words from words.
+	 */
+	int characteristics() {
+		return SORTED_WORDS;
+	}
+
+	private static <N, C> CloseWordsIterator<N, C> closeWords(WordIterator<N, C> all, String word, int distance,
+			EditCosts costs) {
+		return new CloseWordsIterator<>(all.nodes, all.start, all.prefix(), word, distance, costs);
+	}
+
+	@Override
+	public Set<String> findAllWords() {
+		return toSet(streamAllWords());
+	}
+
+	@Override
+	public Stream<String> streamAllWords() {
+		return streamWordsBeginningWith("");
+	}
+
+	@Override
+	public Set<String> findWordsBeginningWith(String prefix) {
+		return toSet(streamWordsBeginningWith(prefix));
+	}
+
+	@Override
+	public Stream<String> streamWordsBeginningWith(String prefix) {
+		WordIterator<?, ?> words = words(prefix);
+		return words == null ? Stream.empty() : stream(words, characteristics());
+	}
+
+	@Override
+	public Set<String> findWordsContaining(String pattern) {
+		return toSet(streamWordsContaining(pattern));
+	}
+
+	@Override
+	public Stream<String> streamWordsContaining(String pattern) {
+		return streamAllWords().filter(word -> word.contains(pattern));
+	}
+
+	@Override
+	public Set<String> findWordsEndingWith(String suffix) {
+		return toSet(streamWordsEndingWith(suffix));
+	}
+
+	@Override
+	public Stream<String> streamWordsEndingWith(String suffix) {
+		return streamAllWords().filter(word -> word.endsWith(suffix));
+	}
+
+	@Override
+	public Set<String> findCloseWords(String word, int distance, EditCosts costs) {
+		return toSet(streamCloseWords(word, distance, costs));
+	}
+
+	@Override
+	public Stream<String> streamCloseWords(String word, int distance, EditCosts costs) {
+		WordIterator<?, ?> all = words("");
+		return all == null ? Stream.empty() : stream(closeWords(all, word, distance, costs), characteristics());
+	}
+
+	@Override
+	public Set<String> findCloseWordsChangedLetters(String word, int distance) {
+		return findCloseWords(word, distance, EditCosts.CHANGED_LETTERS);
+	}
+
+	@Override
+	public Set<String> findCloseWordsAddedLetters(String word, int distance) {
+		return findCloseWords(word, distance, EditCosts.ADDED_LETTERS);
+	}
+
+	@Override
+	public Set<String> findCloseWordsRemovedLetters(String word, int distance) {
+		return findCloseWords(word, distance, EditCosts.REMOVED_LETTERS);
+	}
+
+	@Override
+	public Set<String> findCloseWordsAllChanges(String word, int distance) {
+		return findCloseWords(word, distance, EditCosts.ALL_CHANGES);
+	}
+}
@@ -0,0 +1,596 @@
+package tries.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import tries.EditCosts;
+import tries.ITrie;
+
+/**
+ * Wraps any ITrie to keep the results of its prefix, suffix, substring,
+ * close word and top k queries, so that repeated queries are answered
+ * without building the result again. The cache holds at most the given
+ * number of words across all its results, and evicts the least recently
+ * used results to make room. Results are returned as unmodifiable views,
+ * and the same view is returned for every hit. Pattern queries are passed
+ * straight through.
+ *
+ * Inserting or removing a word only drops the results it could change: those
+ * of the prefixes, suffixes and substrings of the word, and of the close word
+ * queries it is close enough to. removeAllWithPrefix drops the prefix
+ * results above and below the prefix and everything else. Changes made
+ * through the nodes that getChild, getParent and followPath return are not
+ * seen by the cache, and neither are changes made to the wrapped trie
+ * directly.
+ *
+ * Any number of threads can use a CachingTrie when the wrapped trie allows
+ * it. Queries run outside the lock of the cache, and a result is only kept
+ * if nothing was inserted or removed while it was built.
+ */
+public class CachingTrie implements ITrie {
+	private enum Query {
+		BEGINNING_WITH, TOP_K, ENDING_WITH, CONTAINING, CLOSE
+	}
+
+	/*
+	 * The query a result belongs to. The text is the prefix, suffix, pattern
+	 * or word queried, and n the k of a top k query or the distance of a close
+	 * word query. A close word query made through one of the
+	 * findCloseWordsChangedLetters family is a preset query, kept apart from
+	 * findCloseWords with the same costs since the wrapped trie can answer
+	 * the two differently. Both are invalidated through their costs, which
+	 * is how ITrie defines the presets.
+	 */
+	private static final class Key {
+		private final Query query;
+		private final String text;
+		private final int n;
+		private final EditCosts costs;
+		private final boolean preset;
+
+		Key(Query query, String text, int n, EditCosts costs) {
+			this(query, text, n, costs, false);
+		}
+
+		Key(Query query, String text, int n, EditCosts costs, boolean preset) {
+			this.query = query;
+			this.text = text;
+			this.n = n;
+			this.costs = costs;
+			this.preset = preset;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) other;
+			return query == key.query && n == key.n && preset == key.preset && text.equals(key.text)
+					&& (costs == null ? key.costs == null : costs.equals(key.costs));
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = ((query.hashCode() * 31 + text.hashCode()) * 31 + n) * 31 + (costs == null ? 0 : costs.hashCode());
+			return preset ? hash + 1 : hash;
+		}
+	}
+
+	private final ITrie trie;
+	private final long maxWords;
+	// the results in least recently used order, guarded by itself like everything below
+	private final LinkedHashMap<Key, Result> results = new LinkedHashMap<>(16, 0.75f, true);
+	// the keys of the results by their text, to find what an insert changes
+	private final Map<String, List<Key>> keysByText = new HashMap<>();
+	/*
+	 * The keys of the close word results by the pieces of their word, see
+	 * pieces, and those whose word is too short to be split.
+	 */
+	private final Map<String, List<Key>> closeKeys = new HashMap<>();
+	private final Set<Key> shortCloseKeys = new LinkedHashSet<>();
+	// the longest substring pattern and close word piece that have been cached
+	private int maxPattern;
+	private int maxPiece;
+	private long words;
+	// incremented by every change, so that results built across a change are not kept
+	private long version;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long invalidations;
+
+	private static final class Result {
+		private final Object view;
+		private final int weight;
+
+		Result(Object view, int weight) {
+			this.view = view;
+			this.weight = weight;
+		}
+	}
+
+	/**
+	 * Cache the query results of the given trie, holding at most the given
+	 * number of words.
+	 * @param trie
+	 * @param maxWords
+	 */
+	public CachingTrie(ITrie trie, long maxWords) {
+		if (maxWords < 0) {
+			throw new IllegalArgumentException("The cache size must not be negative: " + maxWords);
+		}
+		this.trie = trie;
+		this.maxWords = maxWords;
+	}
+
+	/**
+	 * @return the trie whose results are cached
+	 */
+	public ITrie getTrie() {
+		return trie;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T lookup(Key key, Supplier<T> query) {
+		long started;
+		synchronized (results) {
+			Result result = results.get(key);
+			if (result != null) {
+				hits++;
+				return (T) result.view;
+			}
+			misses++;
+			started = version;
+		}
+		T view = query.get();
+		synchronized (results) {
+			if (version == started && !results.containsKey(key)) {
+				store(key, new Result(view, size(view) + 1));
+			}
+		}
+		return view;
+	}
+
+	private static int size(Object view) {
+		return view instanceof Set ? ((Set<?>) view).size() : ((List<?>) view).size();
+	}
+
+	private void store(Key key, Result result) {
+		if (result.weight > maxWords) {
+			return;
+		}
+		results.put(key, result);
+		keysByText.computeIfAbsent(key.text, text -> new ArrayList<>(1)).add(key);
+		if (key.query == Query.CLOSE) {
+			String[] pieces = pieces(key);
+			if (pieces == null) {
+				shortCloseKeys.add(key);
+			}
+			for (String piece : pieces == null ? new String[0] : pieces) {
+				closeKeys.computeIfAbsent(piece, text -> new ArrayList<>(1)).add(key);
+				maxPiece = Math.max(maxPiece, piece.length());
+			}
+		} else if (key.query == Query.CONTAINING) {
+			maxPattern = Math.max(maxPattern, key.text.length());
+		}
+		words = words + result.weight;
+		Iterator<Map.Entry<Key, Result>> eldest = results.entrySet().iterator();
+		while (words > maxWords) {
+			Map.Entry<Key, Result> entry = eldest.next();
+			eldest.remove();
+			forget(entry.getKey(), entry.getValue());
+			evictions++;
+		}
+	}
+
+	/*
+	 * Remove the given key, which has just been taken out of the results,
+	 * from the indexes.
+	 */
+	private void forget(Key key, Result result) {
+		List<Key> keys = keysByText.get(key.text);
+		keys.remove(key);
+		if (keys.isEmpty()) {
+			keysByText.remove(key.text);
+		}
+		if (key.query == Query.CLOSE) {
+			String[] pieces = pieces(key);
+			if (pieces == null) {
+				shortCloseKeys.remove(key);
+			}
+			for (String piece : pieces == null ? new String[0] : pieces) {
+				List<Key> pieceKeys = closeKeys.get(piece);
+				pieceKeys.remove(key);
+				if (pieceKeys.isEmpty()) {
+					closeKeys.remove(piece);
+				}
+			}
+		}
+		words = words - result.weight;
+	}
+
+	/*
+	 * Split the word of a close word query into one more piece than the
+	 * number of pieces its edits can touch, or return null if it is too short
+	 * for that. Every edit costs at least 1 and touches one piece, or two for
+	 * a transposition, so any word close enough contains one of the pieces
+	 * unchanged.
+	 */
+	private static String[] pieces(Key key) {
+		String text = key.text;
+		boolean transposed = key.costs.getTransposed() != EditCosts.DISABLED;
+		// the pieces edits can touch, in a long since a large distance would overflow
+		long touched = transposed ? 2L * key.n : key.n;
+		if (key.n < 0 || touched >= text.length()) {
+			return null;
+		}
+		int count = (int) touched + 1;
+		String[] pieces = new String[count];
+		for (int i = 0; i < count; i++) {
+			pieces[i] = text.substring((int) ((long) i * text.length() / count), (int) ((long) (i + 1) * text.length() / count));
+		}
+		return pieces;
+	}
+
+	private void invalidate(Key key) {
+		Result result = results.remove(key);
+		if (result != null) {
+			forget(key, result);
+			invalidations++;
+		}
+	}
+
+	/*
+	 * Drop the results of the given kinds of query whose text is the given
+	 * one.
+	 */
+	private void invalidate(String text, Query query, Query other) {
+		List<Key> keys = keysByText.get(text);
+		if (keys == null) {
+			return;
+		}
+		for (Key key : new ArrayList<>(keys)) {
+			if (key.query == query || key.query == other) {
+				invalidate(key);
+			}
+		}
+	}
+
+	/*
+	 * Drop every result that adding or removing the given word could change.
+	 */
+	private void changed(String word) {
+		synchronized (results) {
+			version++;
+			if (results.isEmpty()) {
+				return;
+			}
+			int length = word.length();
+			invalidate("", Query.CONTAINING, null);
+			for (int i = 0; i <= length; i++) {
+				invalidate(word.substring(0, i), Query.BEGINNING_WITH, Query.TOP_K);
+				invalidate(word.substring(i), Query.ENDING_WITH, null);
+				for (int j = i + 1; j <= length && j - i <= maxPattern; j++) {
+					invalidate(word.substring(i, j), Query.CONTAINING, null);
+				}
+			}
+			Set<Key> close = new LinkedHashSet<>(shortCloseKeys);
+			if (!closeKeys.isEmpty()) {
+				for (int i = 0; i < length; i++) {
+					for (int j = i + 1; j <= length && j - i <= maxPiece; j++) {
+						List<Key> keys = closeKeys.get(word.substring(i, j));
+						if (keys != null) {
+							close.addAll(keys);
+						}
+					}
+				}
+			}
+			for (Key key : close) {
+				// every added or removed letter costs at least 1
+				if (Math.abs(key.text.length() - length) <= key.n && key.costs.distance(key.text, word) <= key.n) {
+					invalidate(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drop every cached result.
+	 */
+	public void clear() {
+		synchronized (results) {
+			version++;
+			results.clear();
+			keysByText.clear();
+			closeKeys.clear();
+			shortCloseKeys.clear();
+			maxPattern = 0;
+			maxPiece = 0;
+			words = 0;
+		}
+	}
+
+	/**
+	 * @return the hit and miss counts of the cache and its size
+	 */
+	public Stats getStats() {
+		synchronized (results) {
+			return new Stats(hits, misses, evictions, invalidations, results.size(), words);
+		}
+	}
+
+	/**
+	 * What a CachingTrie has done since it was created.
+	 */
+	public static final class Stats {
+		private final long hits;
+		private final long misses;
+		private final long evictions;
+		private final long invalidations;
+		private final int results;
+		private final long words;
+
+		Stats(long hits, long misses, long evictions, long invalidations, int results, long words) {
+			this.hits = hits;
+			this.misses = misses;
+			this.evictions = evictions;
+			this.invalidations = invalidations;
+			this.results = results;
+			this.words = words;
+		}
+
+		public long getHits() {
+			return hits;
+		}
+
+		public long getMisses() {
+			return misses;
+		}
+
+		public double getHitRate() {
+			return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+		}
+
+		public long getEvictions() {
+			return evictions;
+		}
+
+		public long getInvalidations() {
+			return invalidations;
+		}
+
+		/**
+		 * @return the number of results held
+		 */
+		public int getResults() {
+			return results;
+		}
+
+		/**
+		 * @return the size of the results held, counting one more than the
+		 *         number of words for each
+		 */
+		public long getWords() {
+			return words;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d hits, %d misses (%.1f%%), %d evictions, %d invalidations, %d results of %d words",
+					hits, misses, getHitRate() * 100, evictions, invalidations, results, words);
+		}
+	}
+
+	@Override
+	public void insert(String word) {
+		trie.insert(word);
+		changed(word);
+	}
+
+	@Override
+	public void insert(CharSequence word, int from, int to) {
+		trie.insert(word, from, to);
+		changed(word.subSequence(from, to).toString());
+	}
+
+	@Override
+	public void insert(String word, int weight) {
+		trie.insert(word, weight);
+		changed(word);
+	}
+
+	@Override
+	public boolean remove(String word) {
+		boolean removed = trie.remove(word);
+		if (removed) {
+			changed(word);
+		}
+		return removed;
+	}
+
+	@Override
+	public int removeAllWithPrefix(String prefix) {
+		int removed = trie.removeAllWithPrefix(prefix);
+		if (removed > 0) {
+			synchronized (results) {
+				version++;
+				for (Key key : new ArrayList<>(results.keySet())) {
+					boolean byPrefix = key.query == Query.BEGINNING_WITH || key.query == Query.TOP_K;
+					if (!byPrefix || key.text.startsWith(prefix) || prefix.startsWith(key.text)) {
+						invalidate(key);
+					}
+				}
+			}
+		}
+		return removed;
+	}
+
+	@Override
+	public boolean hasChild(char letter) {
+		return trie.hasChild(letter);
+	}
+
+	@Override
+	public ITrie getChild(char letter) {
+		return trie.getChild(letter);
+	}
+
+	@Override
+	public ITrie getParent() {
+		return trie.getParent();
+	}
+
+	@Override
+	public ITrie followPath(String path) {
+		return trie.followPath(path);
+	}
+
+	@Override
+	public ITrie followPath(CharSequence path, int from, int to) {
+		return trie.followPath(path, from, to);
+	}
+
+	@Override
+	public boolean contains(String word) {
+		return trie.contains(word);
+	}
+
+	@Override
+	public boolean contains(CharSequence word, int from, int to) {
+		return trie.contains(word, from, to);
+	}
+
+	@Override
+	public void containsBatch(String[] words, boolean[] found) {
+		trie.containsBatch(words, found);
+	}
+
+	@Override
+	public void followPathBatch(String[] paths, ITrie[] nodes) {
+		trie.followPathBatch(paths, nodes);
+	}
+
+	@Override
+	public Set<String> findAllWords() {
+		return findWordsBeginningWith("");
+	}
+
+	@Override
+	public Stream<String> streamAllWords() {
+		return trie.streamAllWords();
+	}
+
+	@Override
+	public Set<String> findWordsBeginningWith(String prefix) {
+		return lookup(new Key(Query.BEGINNING_WITH, prefix, 0, null),
+				() -> Collections.unmodifiableSet(trie.findWordsBeginningWith(prefix)));
+	}
+
+	@Override
+	public Stream<String> streamWordsBeginningWith(String prefix) {
+		return trie.streamWordsBeginningWith(prefix);
+	}
+
+	@Override
+	public Stream<String> streamWordsBeginningWith(String prefix, String after) {
+		return trie.streamWordsBeginningWith(prefix, after);
+	}
+
+	@Override
+	public List<String> topKWithPrefix(String prefix, int k) {
+		return lookup(new Key(Query.TOP_K, prefix, k, null),
+				() -> Collections.unmodifiableList(trie.topKWithPrefix(prefix, k)));
+	}
+
+	@Override
+	public Set<String> findWordsContaining(String pattern) {
+		return lookup(new Key(Query.CONTAINING, pattern, 0, null),
+				() -> Collections.unmodifiableSet(trie.findWordsContaining(pattern)));
+	}
+
+	@Override
+	public Stream<String> streamWordsContaining(String pattern) {
+		return trie.streamWordsContaining(pattern);
+	}
+
+	@Override
+	public Set<String> findWordsMatching(String pattern, int minLength, int maxLength) {
+		return trie.findWordsMatching(pattern, minLength, maxLength);
+	}
+
+	@Override
+	public Stream<String> streamWordsMatching(String pattern, int minLength, int maxLength) {
+		return trie.streamWordsMatching(pattern, minLength, maxLength);
+	}
+
+	@Override
+	public Set<String> findWordsEndingWith(String suffix) {
+		return lookup(new Key(Query.ENDING_WITH, suffix, 0, null),
+				() -> Collections.unmodifiableSet(trie.findWordsEndingWith(suffix)));
+	}
+
+	@Override
+	public Stream<String> streamWordsEndingWith(String suffix) {
+		return trie.streamWordsEndingWith(suffix);
+	}
+
+	@Override
+	public Set<String> findCloseWordsChangedLetters(String word, int distance) {
+		return lookup(new Key(Query.CLOSE, word, distance, EditCosts.CHANGED_LETTERS, true),
+				() -> Collections.unmodifiableSet(trie.findCloseWordsChangedLetters(word, distance)));
+	}
+
+	@Override
+	public Set<String> findCloseWordsAddedLetters(String word, int distance) {
+		return lookup(new Key(Query.CLOSE, word, distance, EditCosts.ADDED_LETTERS, true),
+				() -> Collections.unmodifiableSet(trie.findCloseWordsAddedLetters(word, distance)));
+	}
+
+	@Override
+	public Set<String> findCloseWordsRemovedLetters(String word, int distance) {
+		return lookup(new Key(Query.CLOSE, word, distance, EditCosts.REMOVED_LETTERS, true),
+				() -> Collections.unmodifiableSet(trie.findCloseWordsRemovedLetters(word, distance)));
+	}
+
+	@Override
+	public Set<String> findCloseWordsAllChanges(String word, int distance) {
+		return lookup(new Key(Query.CLOSE, word, distance, EditCosts.ALL_CHANGES, true),
+				() -> Collections.unmodifiableSet(trie.findCloseWordsAllChanges(word, distance)));
+	}
+
+	@Override
+	public Set<String> findCloseWords(String word, int distance, EditCosts costs) {
+		return lookup(new Key(Query.CLOSE, word, distance, costs),
+				() -> Collections.unmodifiableSet(trie.findCloseWords(word, distance, costs)));
+	}
+
+	@Override
+	public Stream<String> streamCloseWords(String word, int distance, EditCosts costs) {
+		return trie.streamCloseWords(word, distance, costs);
+	}
+
+	@Override
+	public int countWordsWithPrefix(String prefix) {
+		return trie.countWordsWithPrefix(prefix);
+	}
+
+	@Override
+	public int countLeafNotes() {
+		return trie.countLeafNotes();
+	}
+
+	@Override
+	public int getNumDeeperThan(int depth) {
+		return trie.getNumDeeperThan(depth);
+	}
+}
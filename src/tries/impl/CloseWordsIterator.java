@@ -0,0 +1,140 @@
+package tries.impl;
+
+import java.util.Arrays;
+
+import tries.EditCosts;
+
+/**
+ * Enumerates the words within an edit distance of a word, under a cost model.
+ * rows[d][j] holds the cheapest cost of editing the first j letters of the
+ * word into the first d letters of the path, prefix included, and the row
+ * for each letter is filled in from the one above it as the walk goes down.
+ * The rows and the path are reused for every node, so the only allocations
+ * are the words that are returned and the rows for the deepest path.
+ *
+ * Since costs are positive, a row whose smallest entry exceeds the distance
+ * means that no word below the node can be close enough, unless a
+ * transposition can still reach back to the row above it. An edge with
+ * several letters has a row for each of them and is skipped as soon as one
+ * of them is too far away.
+ */
+final class CloseWordsIterator<N, C> extends WordIterator<N, C> {
+	private static final int INFINITY = Integer.MAX_VALUE / 2;
+
+	private final char[] word;
+	private final int distance;
+	private final int changed;
+	private final int added;
+	private final int removed;
+	private final int transposed;
+	// only added letters make a path longer than the word
+	private final long maxDepth;
+	private int[][] rows;
+	// swapsFrom[d] is true when a transposition from row d could still be close enough
+	private boolean[] swapsFrom;
+	// whether a word at or below the start could be close enough, given the prefix
+	private final boolean startClose;
+
+	CloseWordsIterator(Nodes<N, C> nodes, N start, CharSequence prefix, String word, int distance, EditCosts costs) {
+		super(nodes, start, prefix);
+		this.word = word.toCharArray();
+		// disabled edits cost INFINITY, which no distance may reach
+		this.distance = Math.min(distance, INFINITY - 1);
+		this.changed = cost(costs.getChanged());
+		this.added = cost(costs.getAdded());
+		this.removed = cost(costs.getRemoved());
+		this.transposed = cost(costs.getTransposed());
+		long maxDepth = word.length();
+		if (added != INFINITY && distance > 0) {
+			maxDepth += distance / added;
+		}
+		this.maxDepth = maxDepth;
+		int initial = (int) Math.min(maxDepth + 1, 16);
+		rows = new int[initial][];
+		swapsFrom = new boolean[initial];
+		rows[0] = new int[word.length() + 1];
+		for (int j = 1; j <= word.length(); j++) {
+			rows[0][j] = Math.min(INFINITY, rows[0][j - 1] + removed);
+		}
+		swapsFrom[0] = canSwapFrom(rows[0]);
+		boolean close = distance >= 0;
+		for (int depth = 1; close && depth <= prefixLength; depth++) {
+			close = fill(depth);
+		}
+		startClose = close;
+	}
+
+	private static int cost(int cost) {
+		return cost == EditCosts.DISABLED ? INFINITY : Math.min(cost, INFINITY);
+	}
+
+	private boolean canSwapFrom(int[] row) {
+		if (transposed != INFINITY) {
+			for (int cost : row) {
+				if (cost + transposed <= distance) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Fill in the row for the first depth letters of the path, returning
+	 * false if no word that goes on through them can be close enough.
+	 */
+	private boolean fill(int depth) {
+		if (depth > maxDepth) {
+			return false;
+		}
+		if (depth == rows.length) {
+			int size = (int) Math.min(maxDepth + 1, depth * 2L);
+			rows = Arrays.copyOf(rows, size);
+			swapsFrom = Arrays.copyOf(swapsFrom, size);
+		}
+		int length = word.length;
+		if (rows[depth] == null) {
+			rows[depth] = new int[length + 1];
+		}
+		int[] previous = rows[depth - 1];
+		int[] row = rows[depth];
+		char c = path[depth - 1];
+		// a transposition needs two letters of path and reads the row two up
+		boolean swapping = depth > 1 && swapsFrom[depth - 2];
+		row[0] = Math.min(INFINITY, previous[0] + added);
+		int min = row[0];
+		for (int j = 1; j <= length; j++) {
+			char letter = word[j - 1];
+			int best = previous[j - 1] + (letter == c ? 0 : changed);
+			best = Math.min(best, previous[j] + added);
+			best = Math.min(best, row[j - 1] + removed);
+			if (swapping && j > 1 && word[j - 2] == c && path[depth - 2] == letter) {
+				best = Math.min(best, rows[depth - 2][j - 2] + transposed);
+			}
+			row[j] = Math.min(best, INFINITY);
+			if (row[j] < min) {
+				min = row[j];
+			}
+		}
+		swapsFrom[depth] = canSwapFrom(row);
+		return min <= distance || swapsFrom[depth - 1];
+	}
+
+	@Override
+	protected boolean enter(int from, int to) {
+		if (!startClose) {
+			return false;
+		}
+		for (int length = from + 1; length <= to; length++) {
+			if (!fill(prefixLength + length)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	protected boolean accept(int length) {
+		return startClose && rows[prefixLength + length][word.length] <= distance;
+	}
+}
@@ -0,0 +1,257 @@
+package tries.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import tries.ITrie;
+
+/**
+ * An ITrie that any number of threads can query while others insert, with
+ * no locks on either side.
+ *
+ * The children of a node are held in a volatile field as an immutable
+ * snapshot: nothing, the only child itself, or sorted arrays of letters and
+ * child nodes. Readers load the snapshot once per node and search it, so
+ * contains and followPath finish in a number of steps bounded by the length
+ * of the word whatever writers are doing. An insert that needs a new child
+ * builds the next snapshot with the child added and installs it with
+ * compareAndSet, starting again from the new snapshot if another insert got
+ * there first; it then uses whichever child for the letter won. A word is
+ * added when the volatile isWord flag of its last node is set, which is the
+ * point at which contains starts to return true for it, so contains is
+ * linearizable.
+ *
+ * Enumeration walks the snapshots it finds as it goes. It returns every word
+ * inserted before it started, never a word that was not inserted, and may or
+ * may not return words inserted while it runs. Counts are weakly consistent
+ * in the same way. Weights are not kept, and words cannot be removed.
+ */
+public class ConcurrentTrie extends AbstractTrie {
+	private static final Children NO_CHILDREN = new Children(new char[0], new ConcurrentTrie[0]);
+	private static final AtomicReferenceFieldUpdater<ConcurrentTrie, Object> CHILDREN = AtomicReferenceFieldUpdater
+			.newUpdater(ConcurrentTrie.class, Object.class, "children");
+
+	/*
+	 * The children of a node with none or several, never changed once
+	 * published. A node with one child, which most have, holds the child
+	 * itself instead.
+	 */
+	private static final class Children {
+		private final char[] keys;
+		private final ConcurrentTrie[] nodes;
+
+		Children(char[] keys, ConcurrentTrie[] nodes) {
+			this.keys = keys;
+			this.nodes = nodes;
+		}
+
+		ConcurrentTrie get(char letter) {
+			int index = Arrays.binarySearch(keys, letter);
+			return index < 0 ? null : nodes[index];
+		}
+
+		/*
+		 * Return a copy with the given child inserted at the given index.
+		 */
+		Children with(int index, char letter, ConcurrentTrie child) {
+			char[] newKeys = new char[keys.length + 1];
+			ConcurrentTrie[] newNodes = new ConcurrentTrie[keys.length + 1];
+			System.arraycopy(keys, 0, newKeys, 0, index);
+			System.arraycopy(nodes, 0, newNodes, 0, index);
+			newKeys[index] = letter;
+			newNodes[index] = child;
+			System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+			System.arraycopy(nodes, index, newNodes, index + 1, keys.length - index);
+			return new Children(newKeys, newNodes);
+		}
+	}
+
+	private final ConcurrentTrie parent;
+	// the letter of the edge from the parent
+	private final char letter;
+	// a Children, or the only child
+	private volatile Object children = NO_CHILDREN;
+	private volatile boolean isWord;
+
+	public ConcurrentTrie() {
+		this(null, (char) 0);
+	}
+
+	private ConcurrentTrie(ConcurrentTrie parent, char letter) {
+		this.parent = parent;
+		this.letter = letter;
+	}
+
+	private static ConcurrentTrie child(Object children, char letter) {
+		if (children instanceof ConcurrentTrie) {
+			ConcurrentTrie only = (ConcurrentTrie) children;
+			return only.letter == letter ? only : null;
+		}
+		return ((Children) children).get(letter);
+	}
+
+	private static int childCount(Object children) {
+		return children instanceof ConcurrentTrie ? 1 : ((Children) children).keys.length;
+	}
+
+	private static ConcurrentTrie childAt(Object children, int index) {
+		return children instanceof ConcurrentTrie ? (ConcurrentTrie) children : ((Children) children).nodes[index];
+	}
+
+	/*
+	 * Return the child with the given letter, adding it if there is none.
+	 */
+	private ConcurrentTrie addChild(char letter) {
+		ConcurrentTrie child = null;
+		while (true) {
+			Object current = children;
+			ConcurrentTrie existing = child(current, letter);
+			if (existing != null) {
+				return existing;
+			}
+			if (child == null) {
+				child = new ConcurrentTrie(this, letter);
+			}
+			Object next;
+			if (current == NO_CHILDREN) {
+				next = child;
+			} else if (current instanceof ConcurrentTrie) {
+				ConcurrentTrie only = (ConcurrentTrie) current;
+				next = only.letter < letter ? new Children(new char[] { only.letter, letter }, new ConcurrentTrie[] { only, child })
+						: new Children(new char[] { letter, only.letter }, new ConcurrentTrie[] { child, only });
+			} else {
+				Children several = (Children) current;
+				next = several.with(-Arrays.binarySearch(several.keys, letter) - 1, letter, child);
+			}
+			if (CHILDREN.compareAndSet(this, current, next)) {
+				return child;
+			}
+		}
+	}
+
+	@Override
+	public void insert(String word) {
+		insert(word, 0, word.length());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#insert(java.lang.CharSequence, int, int)
+	 */
+	@Override
+	public void insert(CharSequence word, int from, int to) {
+		ConcurrentTrie node = this;
+		for (int i = from; i < to; i++) {
+			node = node.addChild(word.charAt(i));
+		}
+		// the path is published before the word is
+		node.isWord = true;
+	}
+
+	@Override
+	public boolean hasChild(char letter) {
+		return child(children, letter) != null;
+	}
+
+	@Override
+	public ITrie getChild(char letter) {
+		return child(children, letter);
+	}
+
+	@Override
+	public ITrie getParent() {
+		return parent;
+	}
+
+	@Override
+	public ITrie followPath(String path) {
+		return followPath(path, 0, path.length());
+	}
+
+	@Override
+	public ITrie followPath(CharSequence path, int from, int to) {
+		ConcurrentTrie node = this;
+		for (int i = from; i < to && node != null; i++) {
+			node = child(node.children, path.charAt(i));
+		}
+		return node;
+	}
+
+	@Override
+	public boolean contains(String word) {
+		return contains(word, 0, word.length());
+	}
+
+	@Override
+	public boolean contains(CharSequence word, int from, int to) {
+		ConcurrentTrie node = (ConcurrentTrie) followPath(word, from, to);
+		return node != null && node.isWord;
+	}
+
+	@Override
+	WordIterator<?, ?> words(String prefix) {
+		ConcurrentTrie node = (ConcurrentTrie) followPath(prefix);
+		return node == null ? null : new WordIterator<>(NODES, node, prefix);
+	}
+
+	@Override
+	public int countLeafNotes() {
+		Object snapshot = children;
+		int children = childCount(snapshot);
+		if (children == 0) {
+			return 1;
+		}
+		int count = 0;
+		for (int i = 0; i < children; i++) {
+			count = count + childAt(snapshot, i).countLeafNotes();
+		}
+		return count;
+	}
+
+	@Override
+	public int getNumDeeperThan(int depth) {
+		Object snapshot = children;
+		int count = depth < 0 ? 1 : 0;
+		for (int i = 0; i < childCount(snapshot); i++) {
+			count = count + childAt(snapshot, i).getNumDeeperThan(depth - 1);
+		}
+		return count;
+	}
+
+	/*
+	 * How a WordIterator reads the nodes. The children of a node are read
+	 * once, when the walk reaches it, and that snapshot is used below it.
+	 */
+	private static final Nodes<ConcurrentTrie, Object> NODES = new Nodes<ConcurrentTrie, Object>() {
+		@Override
+		public boolean isWord(ConcurrentTrie node) {
+			return node.isWord;
+		}
+
+		@Override
+		public Object children(ConcurrentTrie node) {
+			return node.children;
+		}
+
+		@Override
+		public int childCount(Object children) {
+			return ConcurrentTrie.childCount(children);
+		}
+
+		@Override
+		public ConcurrentTrie childAt(Object children, int index) {
+			return ConcurrentTrie.childAt(children, index);
+		}
+
+		@Override
+		public char letterAt(Object children, int index) {
+			return ConcurrentTrie.childAt(children, index).letter;
+		}
+
+		@Override
+		public void copyLabel(Object children, int index, ConcurrentTrie child, char[] path, int at) {
+			path[at] = child.letter;
+		}
+	};
+}
@@ -0,0 +1,331 @@
+package tries.impl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import tries.ITrie;
+
+/**
+ * A read-only ITrie stored as a minimal acyclic automaton (a DAWG). Any two
+ * subtrees holding the same words are stored once, so endings such as "ing"
+ * or "ness" are shared by every branch that has them, not only prefixes.
+ *
+ * States are numbered and kept in flat arrays: the outgoing edges of state s
+ * are letters[first[s]] to letters[first[s + 1] - 1], sorted, with the
+ * matching target states in targets.
+ *
+ * Because a state can be reached along many paths it has no single parent.
+ * Nodes are views of a state that remember the view they were reached from,
+ * so getParent returns the node one letter back along the path that was
+ * followed, and null for the root. Views are created by getChild and
+ * followPath and are not identical across calls.
+ */
+public final class Dawg extends AbstractTrie {
+	private final States states;
+	private final int state;
+	private final Dawg parent;
+
+	/*
+	 * The automaton shared by all views.
+	 */
+	private static final class States {
+		private final int[] first;
+		private final char[] letters;
+		private final int[] targets;
+		private final boolean[] words;
+
+		States(int[] first, char[] letters, int[] targets, boolean[] words) {
+			this.first = first;
+			this.letters = letters;
+			this.targets = targets;
+			this.words = words;
+		}
+
+		/*
+		 * Return the target of the edge with the given letter, or -1.
+		 */
+		int child(int state, char letter) {
+			int index = Arrays.binarySearch(letters, first[state], first[state + 1], letter);
+			return index < 0 ? -1 : targets[index];
+		}
+	}
+
+	/*
+	 * A state while the automaton is built, used to find an equivalent state
+	 * that is already registered.
+	 */
+	private static final class Signature {
+		private final boolean word;
+		private final char[] letters;
+		private final int[] targets;
+
+		Signature(boolean word, char[] letters, int[] targets) {
+			this.word = word;
+			this.letters = letters;
+			this.targets = targets;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * Boolean.hashCode(word) + Arrays.hashCode(letters)) + Arrays.hashCode(targets);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Signature)) {
+				return false;
+			}
+			Signature other = (Signature) obj;
+			return word == other.word && Arrays.equals(letters, other.letters) && Arrays.equals(targets, other.targets);
+		}
+	}
+
+	/*
+	 * Builds the automaton bottom up. A subtree is minimized once its
+	 * children are, and is then equivalent to a registered state exactly
+	 * when it has the same word flag and the same edges to the same states.
+	 */
+	private static final class Builder {
+		private final Map<Signature, Integer> register = new HashMap<>();
+		private int[] first = new int[16];
+		private boolean[] words = new boolean[16];
+		private int size;
+		private char[] letters = new char[16];
+		private int[] targets = new int[16];
+		private int edges;
+
+		int add(Trie node) {
+			char[] childLetters = new char[node.childSlots()];
+			int[] childStates = new int[node.childSlots()];
+			int count = 0;
+			for (int slot = 0; slot < node.childSlots(); slot++) {
+				Trie child = node.childAt(slot);
+				if (child != null) {
+					childLetters[count] = node.letterAt(slot);
+					childStates[count] = add(child);
+					count++;
+				}
+			}
+			Signature signature = new Signature(node.isWord(), Arrays.copyOf(childLetters, count),
+					Arrays.copyOf(childStates, count));
+			Integer existing = register.get(signature);
+			if (existing != null) {
+				return existing;
+			}
+			if (size + 1 >= first.length) {
+				first = Arrays.copyOf(first, first.length * 2);
+				words = Arrays.copyOf(words, words.length * 2);
+			}
+			if (edges + count > letters.length) {
+				int length = Math.max(letters.length * 2, edges + count);
+				letters = Arrays.copyOf(letters, length);
+				targets = Arrays.copyOf(targets, length);
+			}
+			int state = size++;
+			first[state] = edges;
+			words[state] = node.isWord();
+			System.arraycopy(signature.letters, 0, letters, edges, count);
+			System.arraycopy(signature.targets, 0, targets, edges, count);
+			edges += count;
+			register.put(signature, state);
+			return state;
+		}
+
+		States build() {
+			first[size] = edges;
+			return new States(Arrays.copyOf(first, size + 1), Arrays.copyOf(letters, edges),
+					Arrays.copyOf(targets, edges), Arrays.copyOf(words, size));
+		}
+	}
+
+	/**
+	 * Build the minimal automaton of the words in the given ITrie. A Trie is
+	 * minimized node by node; any other ITrie is first copied into one.
+	 * @param trie
+	 */
+	public Dawg(ITrie trie) {
+		Trie root;
+		if (trie instanceof Trie) {
+			root = (Trie) trie;
+		} else {
+			root = new Trie();
+			for (String word : trie.findAllWords()) {
+				root.insert(word);
+			}
+		}
+		Builder builder = new Builder();
+		// children are numbered before their parents, so the root is the last state
+		this.state = builder.add(root);
+		this.states = builder.build();
+		this.parent = null;
+	}
+
+	private Dawg(States states, int state, Dawg parent) {
+		this.states = states;
+		this.state = state;
+		this.parent = parent;
+	}
+
+	/**
+	 * Return the number of states, each standing for every trie node with
+	 * the same words below it.
+	 * @return
+	 */
+	public int stateCount() {
+		return states.words.length;
+	}
+
+	/**
+	 * Return the number of edges between states.
+	 * @return
+	 */
+	public int edgeCount() {
+		return states.letters.length;
+	}
+
+	/*
+	 * Return the state at the end of the given range, or -1.
+	 */
+	private int walk(CharSequence path, int from, int to) {
+		int node = state;
+		for (int i = from; i < to && node >= 0; i++) {
+			node = states.child(node, path.charAt(i));
+		}
+		return node;
+	}
+
+	@Override
+	public void insert(String word) {
+		throw new UnsupportedOperationException("A Dawg is read-only");
+	}
+
+	@Override
+	public boolean hasChild(char letter) {
+		return states.child(state, letter) >= 0;
+	}
+
+	@Override
+	public ITrie getChild(char letter) {
+		int child = states.child(state, letter);
+		return child < 0 ? null : new Dawg(states, child, this);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#getParent()
+	 */
+	@Override
+	public ITrie getParent() {
+		// the node this view was reached from, since a shared state has many parents
+		return parent;
+	}
+
+	@Override
+	public ITrie followPath(String path) {
+		return followPath(path, 0, path.length());
+	}
+
+	@Override
+	public ITrie followPath(CharSequence path, int from, int to) {
+		Dawg node = this;
+		for (int i = from; i < to; i++) {
+			int child = states.child(node.state, path.charAt(i));
+			if (child < 0) {
+				return null;
+			}
+			node = new Dawg(states, child, node);
+		}
+		return node;
+	}
+
+	@Override
+	public boolean contains(String word) {
+		return contains(word, 0, word.length());
+	}
+
+	@Override
+	public boolean contains(CharSequence word, int from, int to) {
+		int node = walk(word, from, to);
+		return node >= 0 && states.words[node];
+	}
+
+	@Override
+	WordIterator<?, ?> words(String prefix) {
+		int node = walk(prefix, 0, prefix.length());
+		return node < 0 ? null : new WordIterator<>(new StateNodes(), node, prefix);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#countLeafNotes()
+	 */
+	@Override
+	public int countLeafNotes() {
+		// counts the leaves of the trie the automaton stands for, so a shared state counts once per path to it
+		int[] leaves = new int[stateCount()];
+		return countLeaves(state, leaves);
+	}
+
+	private int countLeaves(int node, int[] leaves) {
+		if (leaves[node] == 0) {
+			int count = states.first[node] == states.first[node + 1] ? 1 : 0;
+			for (int edge = states.first[node]; edge < states.first[node + 1]; edge++) {
+				count = count + countLeaves(states.targets[edge], leaves);
+			}
+			leaves[node] = count;
+		}
+		return leaves[node];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#getNumDeeperThan(int)
+	 */
+	@Override
+	public int getNumDeeperThan(int depth) {
+		// like countLeafNotes, counts the nodes of the trie the automaton stands for
+		return countDeeperThan(state, depth);
+	}
+
+	private int countDeeperThan(int node, int depth) {
+		int count = depth < 0 ? 1 : 0;
+		for (int edge = states.first[node]; edge < states.first[node + 1]; edge++) {
+			count = count + countDeeperThan(states.targets[edge], depth - 1);
+		}
+		return count;
+	}
+
+	/*
+	 * How a WordIterator reads the states, by their numbers.
+	 */
+	private final class StateNodes implements Nodes<Integer, Integer> {
+		@Override
+		public boolean isWord(Integer node) {
+			return states.words[node];
+		}
+
+		@Override
+		public Integer children(Integer node) {
+			return node;
+		}
+
+		@Override
+		public int childCount(Integer node) {
+			return states.first[node + 1] - states.first[node];
+		}
+
+		@Override
+		public Integer childAt(Integer node, int index) {
+			return states.targets[states.first[node] + index];
+		}
+
+		@Override
+		public char letterAt(Integer node, int index) {
+			return states.letters[states.first[node] + index];
+		}
+	}
+}
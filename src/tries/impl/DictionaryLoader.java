@@ -0,0 +1,245 @@
+package tries.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import tries.ITrie;
+
+/**
+ * Loads a word list file into an ITrie without Scanner, regular expressions
+ * or a String per word. The file is memory-mapped a window at a time and
+ * split into words at ASCII whitespace, and each word is copied into one
+ * reusable buffer, lower cased there, and handed to
+ * {@link ITrie#insert(CharSequence, int, int)}. Apart from the ITrie, the
+ * heap used stays the same however large the file is.
+ *
+ * Files are read as UTF-8, as TrieBuilder reads them, and lower cased the
+ * same way. Words made only of ASCII are copied a byte at a time, and a
+ * decoder is only run over the others. Malformed UTF-8 is an error.
+ */
+public final class DictionaryLoader {
+	private static final long DEFAULT_WINDOW = 64L * 1024 * 1024;
+
+	/**
+	 * Receives the progress of a load.
+	 */
+	public interface ProgressListener {
+		public void progress(Stats stats);
+	}
+
+	/**
+	 * How far a load has got and how fast it is going.
+	 */
+	public static final class Stats {
+		private final long bytes;
+		private final long totalBytes;
+		private final long words;
+		private final long elapsedNanos;
+
+		Stats(long bytes, long totalBytes, long words, long elapsedNanos) {
+			this.bytes = bytes;
+			this.totalBytes = totalBytes;
+			this.words = words;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		public long getTotalBytes() {
+			return totalBytes;
+		}
+
+		public long getWords() {
+			return words;
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		public double getWordsPerSecond() {
+			return elapsedNanos == 0 ? 0 : words * 1e9 / elapsedNanos;
+		}
+
+		public double getBytesPerSecond() {
+			return elapsedNanos == 0 ? 0 : bytes * 1e9 / elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d of %d bytes, %d words in %.1f ms (%.0f words/s, %.1f MB/s)", bytes, totalBytes,
+					words, elapsedNanos / 1e6, getWordsPerSecond(), getBytesPerSecond() / 1e6);
+		}
+	}
+
+	private boolean lowerCase = true;
+	private long window = DEFAULT_WINDOW;
+	private ProgressListener listener;
+	private long interval;
+
+	/**
+	 * Lower case every word, which is the default.
+	 * @param lowerCase
+	 * @return this loader
+	 */
+	public DictionaryLoader lowerCase(boolean lowerCase) {
+		this.lowerCase = lowerCase;
+		return this;
+	}
+
+	/**
+	 * Map at most the given number of bytes of the file at a time. Every
+	 * word must be shorter than the window.
+	 * @param bytes
+	 * @return this loader
+	 */
+	public DictionaryLoader window(long bytes) {
+		if (bytes <= 0 || bytes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Window must be between 1 and " + Integer.MAX_VALUE + " bytes: " + bytes);
+		}
+		this.window = bytes;
+		return this;
+	}
+
+	/**
+	 * Report progress to the given listener each time another interval bytes
+	 * have been read, and once more at the end.
+	 * @param listener
+	 * @param interval
+	 * @return this loader
+	 */
+	public DictionaryLoader progress(ProgressListener listener, long interval) {
+		if (interval <= 0) {
+			throw new IllegalArgumentException("Interval must be positive: " + interval);
+		}
+		this.listener = listener;
+		this.interval = interval;
+		return this;
+	}
+
+	/**
+	 * Insert every word of the given file into the given ITrie.
+	 * @param file
+	 * @param trie
+	 * @return the totals of the load
+	 * @throws IOException
+	 */
+	public Stats load(Path file, ITrie trie) throws IOException {
+		long startNanos = System.nanoTime();
+		char[] word = new char[64];
+		CharBuffer chars = CharBuffer.wrap(word);
+		CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+		long words = 0;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long nextReport = interval;
+			long position = 0;
+			while (position < size) {
+				int length = (int) Math.min(window, size - position);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+				boolean last = position + length == size;
+				// the end of the last complete word in this window
+				int end = 0;
+				int start = -1;
+				for (int i = 0; i <= length; i++) {
+					// the end of the file also ends a word
+					boolean separator = i == length ? last : isWhitespace(buffer.get(i));
+					if (separator) {
+						if (start >= 0) {
+							int count = i - start;
+							if (count > word.length) {
+								word = new char[Math.max(count, word.length * 2)];
+								chars = CharBuffer.wrap(word);
+							}
+							// a word never has more chars than bytes
+							int letters = copy(buffer, start, count, word);
+							if (letters < 0) {
+								letters = decode(decoder, buffer, start, count, chars, position);
+							}
+							trie.insert(chars, 0, letters);
+							words++;
+							start = -1;
+						}
+						end = Math.min(i + 1, length);
+						if (listener != null && position + end >= nextReport) {
+							listener.progress(new Stats(position + end, size, words, System.nanoTime() - startNanos));
+							nextReport = position + end + interval;
+						}
+					} else if (start < 0 && i < length) {
+						start = i;
+					}
+				}
+				if (end == 0) {
+					throw new IOException("A word at byte " + position + " is longer than the window of " + window + " bytes");
+				}
+				// a word cut off at the end of the window is read again from the next one
+				position += end;
+			}
+			Stats stats = new Stats(position, size, words, System.nanoTime() - startNanos);
+			if (listener != null) {
+				listener.progress(stats);
+			}
+			return stats;
+		}
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f';
+	}
+
+	/*
+	 * Copy the given bytes into word if they are all ASCII, returning how
+	 * many there are, or return -1 if any is not.
+	 */
+	private int copy(MappedByteBuffer buffer, int start, int count, char[] word) {
+		for (int j = 0; j < count; j++) {
+			byte b = buffer.get(start + j);
+			if (b < 0) {
+				return -1;
+			}
+			char c = (char) b;
+			word[j] = lowerCase && c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+		}
+		return count;
+	}
+
+	/*
+	 * Decode the given bytes as UTF-8 into chars, from its start, returning
+	 * how many chars they make. position is that of the window in the file.
+	 */
+	private int decode(CharsetDecoder decoder, MappedByteBuffer buffer, int start, int count, CharBuffer chars,
+			long position) throws IOException {
+		ByteBuffer in = buffer.duplicate();
+		in.limit(start + count);
+		in.position(start);
+		chars.clear();
+		decoder.reset();
+		CoderResult result = decoder.decode(in, chars, true);
+		if (!result.isError()) {
+			result = decoder.flush(chars);
+		}
+		if (result.isError()) {
+			throw new IOException("Malformed UTF-8 at byte " + (position + in.position()));
+		}
+		int length = chars.position();
+		// the word is read from the start of chars
+		chars.clear();
+		if (lowerCase) {
+			char[] word = chars.array();
+			for (int j = 0; j < length; j++) {
+				word[j] = Character.toLowerCase(word[j]);
+			}
+		}
+		return length;
+	}
+}
@@ -0,0 +1,395 @@
+package tries.impl;
+
+import java.util.*;
+import java.util.Set;
+
+import tries.ITrie;
+
+/**
+ * The original node layout, where every node keeps its children in a
+ * {@code HashMap<Character, Trie>}. It is kept as a reference implementation
+ * so that the compact layout in {@link Trie} can be compared against it.
+ */
+public class HashMapTrie implements ITrie {
+	private Map<Character, HashMapTrie> children = new HashMap<Character, HashMapTrie>();
+	private HashMapTrie parent;
+	private boolean isWord = false;
+
+	public HashMapTrie() {
+
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#insert(java.lang.String)
+	 */
+	@Override
+	public void insert(String word) {
+		if (word.equals("")) {
+			isWord = true;
+		} else {
+			char first = word.charAt(0);
+			String rest = word.substring(1);
+			if (!children.containsKey(first)) {
+				HashMapTrie child = new HashMapTrie();
+				child.parent = this;
+				children.put(first, child);
+			}
+			HashMapTrie node = children.get(first);
+			node.insert(rest);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#remove(java.lang.String)
+	 */
+	@Override
+	public boolean remove(String word) {
+		if (word.equals("")) {
+			boolean res = isWord;
+			isWord = false;
+			return res;
+		}
+		char first = word.charAt(0);
+		HashMapTrie node = children.get(first);
+		if (node == null || !node.remove(word.substring(1))) {
+			return false;
+		}
+		// prune the child on the way back up if nothing is left below it
+		if (!node.isWord && node.children.isEmpty()) {
+			children.remove(first);
+			node.parent = null;
+		}
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#hasChild(char)
+	 */
+	@Override
+	public boolean hasChild(char letter) {
+		return children.containsKey(letter);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#getChild(char)
+	 */
+	@Override
+	public ITrie getChild(char letter) {
+		if (children.containsKey(letter))
+			return children.get(letter);
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#getParent()
+	 */
+	@Override
+	public ITrie getParent() {
+		if (this.parent != null)
+			return this.parent;
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#followPath(java.lang.String)
+	 */
+	@Override
+	public ITrie followPath(String path) {
+		ITrie res = null;
+
+		if (path.equals("")) {
+			return this;
+		} else {
+			char first = path.charAt(0);
+			String rest = path.substring(1);
+			if (children.containsKey(first)) {
+				HashMapTrie node = children.get(first);
+				res = node.followPath(rest);
+			}
+		}
+		return res;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#contains(java.lang.String)
+	 */
+	@Override
+	public boolean contains(String word) {
+		boolean res = false;
+
+		if (word.equals("")) {
+			return this.isWord;
+		} else {
+			char first = word.charAt(0);
+			String rest = word.substring(1);
+			if (children.containsKey(first)) {
+				HashMapTrie node = children.get(first);
+				res = node.contains(rest);
+			}
+		}
+		return res;
+	}
+
+	@Override
+	public Set<String> findAllWords() {
+		Set<String> words = new HashSet<>();
+		findAllWordsHelper(words, "");
+
+		return words;
+	}
+
+	private void findAllWordsHelper(Set<String> words, String word) {
+		if (isWord) {
+			words.add(word);
+		}
+
+		for (char c : children.keySet()) {
+			HashMapTrie child = (HashMapTrie) getChild(c);
+			child.findAllWordsHelper(words, word + c);
+		}
+	}
+
+	@Override
+	public Set<String> findWordsBeginningWith(String prefix) {
+		HashMapTrie node = (HashMapTrie) followPath(prefix);
+
+		Set<String> words = new HashSet<>();
+
+		if (node != null) {
+			node.findAllWordsHelper(words, prefix);
+		}
+
+		return words;
+	}
+
+	@Override
+	public Set<String> findWordsEndingWith(String suffix) {
+		Set<String> words = new HashSet<>();
+		findWordsEndingWithHelper(words, "", suffix);
+		return words;
+	}
+
+	private void findWordsEndingWithHelper(Set<String> words, String word,
+			String suffix) {
+		if (contains(suffix)) {
+			words.add(word + suffix);
+		}
+
+		for (char c : children.keySet()) {
+			HashMapTrie child = (HashMapTrie) getChild(c);
+			child.findWordsEndingWithHelper(words, word + c, suffix);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#findWordsContaining(java.lang.String)
+	 */
+	@Override
+	public Set<String> findWordsContaining(String patttern) {
+		Set<String> words = new HashSet<>();
+		findWordsContainingHelper(words, "", patttern);
+		return words;
+	}
+
+	private void findWordsContainingHelper(Set<String> words, String word,
+			String patttern) {
+		if (word.endsWith(patttern)) {
+			findAllWordsHelper(words, word);
+		}
+
+		for (char c : children.keySet()) {
+			HashMapTrie child = (HashMapTrie) getChild(c);
+			child.findWordsContainingHelper(words, word + c, patttern);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#findCloseWordsChangedLetters(java.lang.String, int)
+	 */
+	@Override
+	public Set<String> findCloseWordsChangedLetters(String word, int distance) {
+		Set<String> words = new HashSet<>();
+
+		findCloseHelper(words, word, distance, "");
+		return words;
+	}
+
+	private void findCloseHelper(Set<String> set, String word, int dis,
+			String res) {
+
+		if (word.equals("") && isWord) {
+			set.add(res);
+		} else if (!word.equals("")) {
+			char first = word.charAt(0);
+			String rest = word.substring(1);
+
+			for (char c : children.keySet()) {
+				HashMapTrie node = children.get(c);
+				if (c == first) {
+					node.findCloseHelper(set, rest, dis, res + first);
+				} else if (dis > 0) {
+					node.findCloseHelper(set, rest, dis - 1, res + c);
+				}
+			}
+
+		}
+
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#findCloseWordsAddedLetters(java.lang.String, int)
+	 */
+	@Override
+	public Set<String> findCloseWordsAddedLetters(String words, int distance) {
+		Set<String> set = new HashSet<>();
+		findCloseHelper2(set, words, distance, "");
+		return set;
+	}
+
+	private void findCloseHelper2(Set<String> set, String word, int dis,
+			String res) {
+
+		if (word.equals("") && isWord) {
+			set.add(res);
+		}
+		if (!word.equals("")) {
+			char first = word.charAt(0);
+			HashMapTrie node = children.get(first);
+			if (node != null) {
+				node.findCloseHelper2(set, word.substring(1), dis, res + first);
+			}
+		}
+		if (dis > 0) {
+			// add a letter before the rest of the word
+			for (char c : children.keySet()) {
+				HashMapTrie node = children.get(c);
+				node.findCloseHelper2(set, word, dis - 1, res + c);
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#findCloseWordsRemovedLetters(java.lang.String, int)
+	 */
+	@Override
+	public Set<String> findCloseWordsRemovedLetters(String words, int distance) {
+		Set<String> set = new HashSet<>();
+		findCloseHelper3(set, words, distance, "");
+		return set;
+	}
+
+	private void findCloseHelper3(Set<String> set, String word, int dis,
+			String res) {
+
+		if (word.equals("") && isWord) {
+			set.add(res);
+		} else if (!word.equals("")) {
+			char first = word.charAt(0);
+			String rest = word.substring(1);
+			HashMapTrie node = children.get(first);
+			if (node != null) {
+				node.findCloseHelper3(set, rest, dis, res + first);
+			}
+			if (dis > 0) {
+				// remove the first letter of the rest of the word
+				findCloseHelper3(set, rest, dis - 1, res);
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#findCloseWordsAllChanges(java.lang.String, int)
+	 */
+	@Override
+	public Set<String> findCloseWordsAllChanges(String word, int distance) {
+		Set<String> set = new HashSet<>();
+
+		findCloseHelper4(set, word, distance, "");
+		return set;
+	}
+
+	private void findCloseHelper4(Set<String> set, String word, int dis,
+			String res) {
+
+		if (word.equals("") && isWord) {
+			set.add(res);
+		}
+		if (!word.equals("")) {
+			char first = word.charAt(0);
+			String rest = word.substring(1);
+			HashMapTrie node = children.get(first);
+			if (node != null) {
+				node.findCloseHelper4(set, rest, dis, res + first);
+			}
+			if (dis > 0) {
+				// remove the first letter
+				findCloseHelper4(set, rest, dis - 1, res);
+				// or change it
+				for (char c : children.keySet()) {
+					if (c != first) {
+						children.get(c).findCloseHelper4(set, rest, dis - 1, res + c);
+					}
+				}
+			}
+		}
+		if (dis > 0) {
+			// add a letter before the rest of the word
+			for (char c : children.keySet()) {
+				children.get(c).findCloseHelper4(set, word, dis - 1, res + c);
+			}
+		}
+	}
+
+	@Override
+	public int countLeafNotes() {
+		int count = 0;
+		if (children.keySet().isEmpty()) {
+			count++;
+		}
+		for (char c : children.keySet()) {
+			HashMapTrie child = (HashMapTrie) getChild(c);
+			count = count + child.countLeafNotes();
+		}
+		return count;
+	}
+
+	@Override
+	public int getNumDeeperThan(int depth) {
+		int count = 0;
+
+		if (depth < 0) {
+			count++;
+		}
+
+		for (char c : children.keySet()) {
+			HashMapTrie child = (HashMapTrie) getChild(c);
+			count = count + child.getNumDeeperThan(depth-1);
+		}
+
+		return count;
+	}
+}
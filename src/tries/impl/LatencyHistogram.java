@@ -0,0 +1,84 @@
+package tries.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * A histogram of latencies in nanoseconds that any number of threads can
+ * record into, laid out like an HdrHistogram: values below 16 have a bucket
+ * each, and every power of two above that is split into 16 equal buckets, so
+ * a recorded value is never off by more than 1/16 of itself whatever its
+ * size.
+ */
+final class LatencyHistogram {
+	private static final int SUB_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	// the values below SUB_BUCKETS, then SUB_BUCKETS for each power of two up to 2^63
+	private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts.incrementAndGet(bucket(nanos));
+		max.accumulate(nanos);
+	}
+
+	long getMax() {
+		return max.get();
+	}
+
+	/*
+	 * Return the largest value that falls into the same bucket as the value at
+	 * the given fraction of the recorded values, or 0 if nothing has been
+	 * recorded.
+	 */
+	long getValueAt(double fraction) {
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total = total + snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(fraction * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen = seen + snapshot[i];
+			if (seen >= rank) {
+				return Math.min(highestIn(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		max.reset();
+	}
+
+	static int bucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BITS;
+		return SUB_BUCKETS + shift * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+	}
+
+	static long highestIn(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,309 @@
+package tries.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import tries.ITrie;
+
+/**
+ * A read-only ITrie that is queried in place in a memory-mapped snapshot
+ * file, so opening one only maps the file and reads its header, however
+ * many words it holds. Snapshots are written by {@link #write(ITrie, Path)}.
+ *
+ * A snapshot is a 12 byte header (magic, version and the offset of the
+ * root) followed by one record per node, children before their parent:
+ *
+ * <pre>
+ * header    one byte (children &lt;&lt; 1 | isWord), or 0xFF and the same as an int
+ * letters   the child letters in sorted order, two bytes each
+ * children  the offset of each child record, four bytes each
+ * </pre>
+ *
+ * Weights are not stored, so topKWithPrefix returns words in alphabetical
+ * order. Nodes are views holding an offset into the shared buffer, and
+ * followPath creates one per letter so that getParent works.
+ */
+public final class MappedTrie extends AbstractTrie {
+	private static final int MAGIC = 0x54524945; // "TRIE"
+	private static final int VERSION = 1;
+	private static final int ROOT = 8;
+	private static final int WIDE = 0xFF;
+
+	private final ByteBuffer buffer;
+	private final int offset;
+	private final MappedTrie parent;
+
+	private MappedTrie(ByteBuffer buffer, int offset, MappedTrie parent) {
+		this.buffer = buffer;
+		this.offset = offset;
+		this.parent = parent;
+	}
+
+	/**
+	 * Map the given snapshot file and return its root. The file must not be
+	 * changed while the ITrie is in use.
+	 * @param file
+	 * @return
+	 * @throws IOException if the file cannot be read or is not a snapshot
+	 */
+	public static MappedTrie open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Snapshot is too large to map: " + file);
+			}
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if (size < ROOT + 4 || buffer.getInt(0) != MAGIC) {
+				throw new IOException("Not a trie snapshot: " + file);
+			}
+			if (buffer.getInt(4) != VERSION) {
+				throw new IOException("Unsupported snapshot version " + buffer.getInt(4) + ": " + file);
+			}
+			return new MappedTrie(buffer, buffer.getInt(ROOT), null);
+		}
+	}
+
+	/**
+	 * Write a snapshot of the words in the given ITrie to the given file,
+	 * replacing it if it exists. A Trie is written node by node; any other
+	 * ITrie is first copied into one.
+	 * @param trie
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void write(ITrie trie, Path file) throws IOException {
+		Trie root;
+		if (trie instanceof Trie) {
+			root = (Trie) trie;
+		} else {
+			root = new Trie();
+			for (String word : trie.findAllWords()) {
+				root.insert(word);
+			}
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		// the root comes last, so its offset is filled in afterwards
+		out.writeInt(0);
+		int rootOffset = writeNode(root, out);
+		out.flush();
+		byte[] snapshot = bytes.toByteArray();
+		ByteBuffer.wrap(snapshot).putInt(ROOT, rootOffset);
+		Files.write(file, snapshot);
+	}
+
+	/*
+	 * Write the records of the node's subtree and return the offset of the
+	 * node's own record.
+	 */
+	private static int writeNode(Trie node, DataOutputStream out) throws IOException {
+		char[] letters = new char[node.childSlots()];
+		int[] offsets = new int[node.childSlots()];
+		int count = 0;
+		for (int slot = 0; slot < node.childSlots(); slot++) {
+			Trie child = node.childAt(slot);
+			if (child != null) {
+				letters[count] = node.letterAt(slot);
+				offsets[count] = writeNode(child, out);
+				count++;
+			}
+		}
+		int offset = out.size();
+		int header = count << 1 | (node.isWord() ? 1 : 0);
+		if (header < WIDE) {
+			out.writeByte(header);
+		} else {
+			out.writeByte(WIDE);
+			out.writeInt(header);
+		}
+		for (int i = 0; i < count; i++) {
+			out.writeChar(letters[i]);
+		}
+		for (int i = 0; i < count; i++) {
+			out.writeInt(offsets[i]);
+		}
+		return offset;
+	}
+
+	private int header(int node) {
+		int header = buffer.get(node) & 0xFF;
+		return header == WIDE ? buffer.getInt(node + 1) : header;
+	}
+
+	private boolean isWord(int node) {
+		return (header(node) & 1) != 0;
+	}
+
+	private int childCount(int node) {
+		return header(node) >>> 1;
+	}
+
+	private int letters(int node) {
+		return node + ((buffer.get(node) & 0xFF) == WIDE ? 5 : 1);
+	}
+
+	private char letterAt(int node, int index) {
+		return buffer.getChar(letters(node) + 2 * index);
+	}
+
+	private int childAt(int node, int index) {
+		return buffer.getInt(letters(node) + 2 * childCount(node) + 4 * index);
+	}
+
+	/*
+	 * Return the offset of the child with the given letter, or -1.
+	 */
+	private int child(int node, char letter) {
+		int count = childCount(node);
+		int letters = letters(node);
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			char key = buffer.getChar(letters + 2 * mid);
+			if (key < letter) {
+				low = mid + 1;
+			} else if (key > letter) {
+				high = mid - 1;
+			} else {
+				return buffer.getInt(letters + 2 * count + 4 * mid);
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * Return the offset of the node at the end of the given range, or -1.
+	 */
+	private int walk(CharSequence path, int from, int to) {
+		int node = offset;
+		for (int i = from; i < to && node >= 0; i++) {
+			node = child(node, path.charAt(i));
+		}
+		return node;
+	}
+
+	@Override
+	public void insert(String word) {
+		throw new UnsupportedOperationException("A mapped snapshot is read-only");
+	}
+
+	@Override
+	public boolean hasChild(char letter) {
+		return child(offset, letter) >= 0;
+	}
+
+	@Override
+	public ITrie getChild(char letter) {
+		int child = child(offset, letter);
+		return child < 0 ? null : new MappedTrie(buffer, child, this);
+	}
+
+	@Override
+	public ITrie getParent() {
+		return parent;
+	}
+
+	@Override
+	public ITrie followPath(String path) {
+		return followPath(path, 0, path.length());
+	}
+
+	@Override
+	public ITrie followPath(CharSequence path, int from, int to) {
+		MappedTrie node = this;
+		for (int i = from; i < to; i++) {
+			int child = child(node.offset, path.charAt(i));
+			if (child < 0) {
+				return null;
+			}
+			node = new MappedTrie(buffer, child, node);
+		}
+		return node;
+	}
+
+	@Override
+	public boolean contains(String word) {
+		return contains(word, 0, word.length());
+	}
+
+	@Override
+	public boolean contains(CharSequence word, int from, int to) {
+		int node = walk(word, from, to);
+		return node >= 0 && isWord(node);
+	}
+
+	@Override
+	WordIterator<?, ?> words(String prefix) {
+		int node = walk(prefix, 0, prefix.length());
+		return node < 0 ? null : new WordIterator<>(new Records(), node, prefix);
+	}
+
+	@Override
+	public int countLeafNotes() {
+		return countLeaves(offset);
+	}
+
+	private int countLeaves(int node) {
+		int count = childCount(node);
+		if (count == 0) {
+			return 1;
+		}
+		int leaves = 0;
+		for (int i = 0; i < count; i++) {
+			leaves = leaves + countLeaves(childAt(node, i));
+		}
+		return leaves;
+	}
+
+	@Override
+	public int getNumDeeperThan(int depth) {
+		return countDeeperThan(offset, depth);
+	}
+
+	private int countDeeperThan(int node, int depth) {
+		int count = depth < 0 ? 1 : 0;
+		for (int i = 0; i < childCount(node); i++) {
+			count = count + countDeeperThan(childAt(node, i), depth - 1);
+		}
+		return count;
+	}
+
+	/*
+	 * How a WordIterator reads the records, by their offsets.
+	 */
+	private final class Records implements Nodes<Integer, Integer> {
+		@Override
+		public boolean isWord(Integer node) {
+			return MappedTrie.this.isWord(node);
+		}
+
+		@Override
+		public Integer children(Integer node) {
+			return node;
+		}
+
+		@Override
+		public int childCount(Integer node) {
+			return MappedTrie.this.childCount(node);
+		}
+
+		@Override
+		public Integer childAt(Integer node, int index) {
+			return MappedTrie.this.childAt(node, index);
+		}
+
+		@Override
+		public char letterAt(Integer node, int index) {
+			return MappedTrie.this.letterAt(node, index);
+		}
+	}
+}
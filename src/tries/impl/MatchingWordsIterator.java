@@ -0,0 +1,49 @@
+package tries.impl;
+
+import java.util.Arrays;
+
+import tries.WordPattern;
+
+/**
+ * Enumerates the words that match a glob pattern, running the automaton of
+ * the pattern down each path alongside the walk. states[d] holds its states
+ * after the letters of the path to the node at depth d, so the automaton
+ * never goes back over a letter. A subtree is skipped as soon as the states
+ * are empty, the path is longer than the longest word allowed, or the
+ * subtree is not deep enough for the shortest.
+ */
+final class MatchingWordsIterator extends WordIterator<Trie, Trie> {
+	private final WordPattern pattern;
+	private final int minLength;
+	private final int maxLength;
+	private long[] states = new long[16];
+
+	MatchingWordsIterator(Trie start, WordPattern pattern, int minLength, int maxLength) {
+		super(Trie.NODES, start, "");
+		this.pattern = pattern;
+		this.minLength = minLength;
+		this.maxLength = maxLength;
+		states[0] = pattern.start();
+	}
+
+	@Override
+	protected boolean enter(int from, int depth) {
+		if (depth > maxLength || depth + node().height() < minLength) {
+			return false;
+		}
+		long next = pattern.step(states[depth - 1], path[depth - 1]);
+		if (next == 0) {
+			return false;
+		}
+		if (depth == states.length) {
+			states = Arrays.copyOf(states, depth * 2);
+		}
+		states[depth] = next;
+		return true;
+	}
+
+	@Override
+	protected boolean accept(int depth) {
+		return depth >= minLength && pattern.accepts(states[depth]);
+	}
+}
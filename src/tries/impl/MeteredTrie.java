@@ -0,0 +1,631 @@
+package tries.impl;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import tries.EditCosts;
+import tries.ITrie;
+
+/**
+ * Wraps any ITrie to record, for each of its methods, how often it is
+ * called, a histogram of how long the calls take, and how many results and
+ * trie nodes they produce and visit. The figures can be read with
+ * getOperations, or over JMX once the trie has been registered:
+ *
+ * <pre>
+ * MeteredTrie dictionary = new MeteredTrie(trie);
+ * dictionary.register("dictionary");
+ * </pre>
+ *
+ * Overloads of a method are recorded together under its name. Nodes visited
+ * are reported by Trie for every query, by the other tries of this package
+ * for the queries that walk their words, and are 0 otherwise. The
+ * stream methods are timed until the stream is returned, which is before
+ * most of the work is done, and count results as the stream is consumed but
+ * not nodes visited. The nodes that getChild, getParent and followPath return
+ * are those of the wrapped trie and are not metered.
+ *
+ * While it is disabled every call goes straight to the wrapped trie after
+ * reading one volatile field, so a MeteredTrie can be left in place and
+ * switched on when it is needed.
+ */
+public class MeteredTrie implements ITrie, MeteredTrieMXBean {
+	private final ITrie trie;
+	private volatile boolean enabled = true;
+	private final List<Meter> meters = new ArrayList<>();
+
+	private final Meter insert = new Meter("insert");
+	private final Meter remove = new Meter("remove");
+	private final Meter removeAllWithPrefix = new Meter("removeAllWithPrefix");
+	private final Meter hasChild = new Meter("hasChild");
+	private final Meter getChild = new Meter("getChild");
+	private final Meter followPath = new Meter("followPath");
+	private final Meter contains = new Meter("contains");
+	private final Meter containsBatch = new Meter("containsBatch");
+	private final Meter containsAll = new Meter("containsAll");
+	private final Meter followPathBatch = new Meter("followPathBatch");
+	private final Meter findAllWords = new Meter("findAllWords");
+	private final Meter streamAllWords = new Meter("streamAllWords");
+	private final Meter findWordsBeginningWith = new Meter("findWordsBeginningWith");
+	private final Meter streamWordsBeginningWith = new Meter("streamWordsBeginningWith");
+	private final Meter topKWithPrefix = new Meter("topKWithPrefix");
+	private final Meter findWordsContaining = new Meter("findWordsContaining");
+	private final Meter streamWordsContaining = new Meter("streamWordsContaining");
+	private final Meter findWordsMatching = new Meter("findWordsMatching");
+	private final Meter streamWordsMatching = new Meter("streamWordsMatching");
+	private final Meter findWordsEndingWith = new Meter("findWordsEndingWith");
+	private final Meter streamWordsEndingWith = new Meter("streamWordsEndingWith");
+	private final Meter findCloseWordsChangedLetters = new Meter("findCloseWordsChangedLetters");
+	private final Meter findCloseWordsAddedLetters = new Meter("findCloseWordsAddedLetters");
+	private final Meter findCloseWordsRemovedLetters = new Meter("findCloseWordsRemovedLetters");
+	private final Meter findCloseWordsAllChanges = new Meter("findCloseWordsAllChanges");
+	private final Meter findCloseWords = new Meter("findCloseWords");
+	private final Meter streamCloseWords = new Meter("streamCloseWords");
+	private final Meter countWordsWithPrefix = new Meter("countWordsWithPrefix");
+	private final Meter countLeafNotes = new Meter("countLeafNotes");
+	private final Meter getNumDeeperThan = new Meter("getNumDeeperThan");
+
+	/*
+	 * The counters of one method. Results and visited nodes are only added
+	 * up, but the latencies go into a histogram.
+	 */
+	private final class Meter {
+		private final String name;
+		private final LongAdder calls = new LongAdder();
+		private final LongAdder results = new LongAdder();
+		private final LongAdder visited = new LongAdder();
+		private final LongAdder nanos = new LongAdder();
+		private final LatencyHistogram latencies = new LatencyHistogram();
+
+		Meter(String name) {
+			this.name = name;
+			meters.add(this);
+		}
+
+		/*
+		 * Record a call that started at the given time, when the thread had
+		 * visited the given number of nodes.
+		 */
+		void record(long start, long visits, long produced) {
+			long elapsed = System.nanoTime() - start;
+			calls.increment();
+			nanos.add(elapsed);
+			latencies.record(elapsed);
+			results.add(produced);
+			visited.add(Visits.count() - visits);
+		}
+
+		Stream<String> count(Stream<String> words) {
+			// a filter rather than peek, which a sized stream skips when it is only counted
+			return words.filter(word -> {
+				results.increment();
+				return true;
+			});
+		}
+
+		void reset() {
+			calls.reset();
+			results.reset();
+			visited.reset();
+			nanos.reset();
+			latencies.reset();
+		}
+	}
+
+	/**
+	 * Meter the given trie, starting out enabled.
+	 * @param trie
+	 */
+	public MeteredTrie(ITrie trie) {
+		this.trie = trie;
+	}
+
+	/**
+	 * @return the trie that is metered
+	 */
+	public ITrie getTrie() {
+		return trie;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Register this trie with the platform MBean server, as
+	 * {@code tries:type=MeteredTrie,name="<name>"}.
+	 * @param name
+	 * @return the name it was registered under
+	 * @throws JMException
+	 */
+	public ObjectName register(String name) throws JMException {
+		ObjectName objectName = new ObjectName("tries:type=MeteredTrie,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.impl.MeteredTrieMXBean#getOperations()
+	 */
+	@Override
+	public Map<String, Stats> getOperations() {
+		Map<String, Stats> operations = new LinkedHashMap<>();
+		for (Meter meter : meters) {
+			long calls = meter.calls.sum();
+			if (calls > 0) {
+				LatencyHistogram latencies = meter.latencies;
+				operations.put(meter.name, new Stats(calls, meter.results.sum(), meter.visited.sum(), meter.nanos.sum(),
+						latencies.getValueAt(0.5), latencies.getValueAt(0.9), latencies.getValueAt(0.99),
+						latencies.getValueAt(0.999), latencies.getMax()));
+			}
+		}
+		return operations;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.impl.MeteredTrieMXBean#getMemoryStats()
+	 */
+	@Override
+	public Trie.MemoryStats getMemoryStats() {
+		return trie instanceof Trie ? ((Trie) trie).memoryStats() : null;
+	}
+
+	@Override
+	public void reset() {
+		for (Meter meter : meters) {
+			meter.reset();
+		}
+	}
+
+	/**
+	 * What was recorded for one method. Latencies are in nanoseconds, and the
+	 * percentiles are the top of the histogram bucket they fall in.
+	 */
+	public static final class Stats {
+		private final long calls;
+		private final long results;
+		private final long nodesVisited;
+		private final long totalNanos;
+		private final long p50Nanos;
+		private final long p90Nanos;
+		private final long p99Nanos;
+		private final long p999Nanos;
+		private final long maxNanos;
+
+		Stats(long calls, long results, long nodesVisited, long totalNanos, long p50Nanos, long p90Nanos,
+				long p99Nanos, long p999Nanos, long maxNanos) {
+			this.calls = calls;
+			this.results = results;
+			this.nodesVisited = nodesVisited;
+			this.totalNanos = totalNanos;
+			this.p50Nanos = p50Nanos;
+			this.p90Nanos = p90Nanos;
+			this.p99Nanos = p99Nanos;
+			this.p999Nanos = p999Nanos;
+			this.maxNanos = maxNanos;
+		}
+
+		public long getCalls() {
+			return calls;
+		}
+
+		public long getResults() {
+			return results;
+		}
+
+		public long getNodesVisited() {
+			return nodesVisited;
+		}
+
+		public long getTotalNanos() {
+			return totalNanos;
+		}
+
+		public double getResultsPerCall() {
+			return calls == 0 ? 0 : (double) results / calls;
+		}
+
+		public double getNodesVisitedPerCall() {
+			return calls == 0 ? 0 : (double) nodesVisited / calls;
+		}
+
+		public double getMeanNanos() {
+			return calls == 0 ? 0 : (double) totalNanos / calls;
+		}
+
+		public long getP50Nanos() {
+			return p50Nanos;
+		}
+
+		public long getP90Nanos() {
+			return p90Nanos;
+		}
+
+		public long getP99Nanos() {
+			return p99Nanos;
+		}
+
+		public long getP999Nanos() {
+			return p999Nanos;
+		}
+
+		public long getMaxNanos() {
+			return maxNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					"%d calls, %.1f results and %.1f nodes per call, mean %.0f ns, p50 %d ns, p99 %d ns, max %d ns",
+					calls, getResultsPerCall(), getNodesVisitedPerCall(), getMeanNanos(), p50Nanos, p99Nanos,
+					maxNanos);
+		}
+	}
+
+	/*
+	 * Make a metered call to the wrapped trie, recording it under the given
+	 * meter with the number of results that produced gives for its value.
+	 */
+	private <T> T call(Meter meter, Supplier<T> call, ToIntFunction<? super T> produced) {
+		long visits = Visits.begin();
+		long start = System.nanoTime();
+		T value;
+		try {
+			value = call.get();
+		} finally {
+			Visits.end();
+		}
+		meter.record(start, visits, produced.applyAsInt(value));
+		return value;
+	}
+
+	/*
+	 * Return how many of the first length results of a batch were found.
+	 */
+	private static int countFound(boolean[] found, int length) {
+		int count = 0;
+		for (int i = 0; i < length; i++) {
+			if (found[i]) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static int countFound(ITrie[] nodes, int length) {
+		int count = 0;
+		for (int i = 0; i < length; i++) {
+			if (nodes[i] != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public void insert(String word) {
+		if (!enabled) {
+			trie.insert(word);
+			return;
+		}
+		call(insert, () -> {
+			trie.insert(word);
+			return null;
+		}, none -> 0);
+	}
+
+	@Override
+	public void insert(CharSequence word, int from, int to) {
+		if (!enabled) {
+			trie.insert(word, from, to);
+			return;
+		}
+		call(insert, () -> {
+			trie.insert(word, from, to);
+			return null;
+		}, none -> 0);
+	}
+
+	@Override
+	public void insert(String word, int weight) {
+		if (!enabled) {
+			trie.insert(word, weight);
+			return;
+		}
+		call(insert, () -> {
+			trie.insert(word, weight);
+			return null;
+		}, none -> 0);
+	}
+
+	@Override
+	public boolean remove(String word) {
+		if (!enabled) {
+			return trie.remove(word);
+		}
+		return call(remove, () -> trie.remove(word), removed -> removed ? 1 : 0);
+	}
+
+	@Override
+	public int removeAllWithPrefix(String prefix) {
+		if (!enabled) {
+			return trie.removeAllWithPrefix(prefix);
+		}
+		return call(removeAllWithPrefix, () -> trie.removeAllWithPrefix(prefix), removed -> removed);
+	}
+
+	@Override
+	public boolean hasChild(char letter) {
+		if (!enabled) {
+			return trie.hasChild(letter);
+		}
+		return call(hasChild, () -> trie.hasChild(letter), found -> found ? 1 : 0);
+	}
+
+	@Override
+	public ITrie getChild(char letter) {
+		if (!enabled) {
+			return trie.getChild(letter);
+		}
+		return call(getChild, () -> trie.getChild(letter), child -> child == null ? 0 : 1);
+	}
+
+	@Override
+	public ITrie getParent() {
+		return trie.getParent();
+	}
+
+	@Override
+	public ITrie followPath(String path) {
+		if (!enabled) {
+			return trie.followPath(path);
+		}
+		return call(followPath, () -> trie.followPath(path), node -> node == null ? 0 : 1);
+	}
+
+	@Override
+	public ITrie followPath(CharSequence path, int from, int to) {
+		if (!enabled) {
+			return trie.followPath(path, from, to);
+		}
+		return call(followPath, () -> trie.followPath(path, from, to), node -> node == null ? 0 : 1);
+	}
+
+	@Override
+	public boolean contains(String word) {
+		if (!enabled) {
+			return trie.contains(word);
+		}
+		return call(contains, () -> trie.contains(word), found -> found ? 1 : 0);
+	}
+
+	@Override
+	public boolean contains(CharSequence word, int from, int to) {
+		if (!enabled) {
+			return trie.contains(word, from, to);
+		}
+		return call(contains, () -> trie.contains(word, from, to), found -> found ? 1 : 0);
+	}
+
+	@Override
+	public void containsBatch(String[] words, boolean[] found) {
+		if (!enabled) {
+			trie.containsBatch(words, found);
+			return;
+		}
+		call(containsBatch, () -> {
+			trie.containsBatch(words, found);
+			return found;
+		}, done -> countFound(done, words.length));
+	}
+
+	@Override
+	public boolean containsAll(Collection<String> words) {
+		if (!enabled) {
+			return trie.containsAll(words);
+		}
+		return call(containsAll, () -> trie.containsAll(words), found -> found ? 1 : 0);
+	}
+
+	@Override
+	public void followPathBatch(String[] paths, ITrie[] nodes) {
+		if (!enabled) {
+			trie.followPathBatch(paths, nodes);
+			return;
+		}
+		call(followPathBatch, () -> {
+			trie.followPathBatch(paths, nodes);
+			return nodes;
+		}, done -> countFound(done, paths.length));
+	}
+
+	@Override
+	public Set<String> findAllWords() {
+		if (!enabled) {
+			return trie.findAllWords();
+		}
+		return call(findAllWords, () -> trie.findAllWords(), Set::size);
+	}
+
+	@Override
+	public Stream<String> streamAllWords() {
+		if (!enabled) {
+			return trie.streamAllWords();
+		}
+		return streamAllWords.count(call(streamAllWords, () -> trie.streamAllWords(), words -> 0));
+	}
+
+	@Override
+	public Set<String> findWordsBeginningWith(String prefix) {
+		if (!enabled) {
+			return trie.findWordsBeginningWith(prefix);
+		}
+		return call(findWordsBeginningWith, () -> trie.findWordsBeginningWith(prefix), Set::size);
+	}
+
+	@Override
+	public Stream<String> streamWordsBeginningWith(String prefix) {
+		if (!enabled) {
+			return trie.streamWordsBeginningWith(prefix);
+		}
+		return streamWordsBeginningWith.count(call(streamWordsBeginningWith, () -> trie.streamWordsBeginningWith(prefix), words -> 0));
+	}
+
+	@Override
+	public Stream<String> streamWordsBeginningWith(String prefix, String after) {
+		if (!enabled) {
+			return trie.streamWordsBeginningWith(prefix, after);
+		}
+		return streamWordsBeginningWith.count(call(streamWordsBeginningWith, () -> trie.streamWordsBeginningWith(prefix, after), words -> 0));
+	}
+
+	@Override
+	public List<String> topKWithPrefix(String prefix, int k) {
+		if (!enabled) {
+			return trie.topKWithPrefix(prefix, k);
+		}
+		return call(topKWithPrefix, () -> trie.topKWithPrefix(prefix, k), List::size);
+	}
+
+	@Override
+	public Set<String> findWordsContaining(String pattern) {
+		if (!enabled) {
+			return trie.findWordsContaining(pattern);
+		}
+		return call(findWordsContaining, () -> trie.findWordsContaining(pattern), Set::size);
+	}
+
+	@Override
+	public Stream<String> streamWordsContaining(String pattern) {
+		if (!enabled) {
+			return trie.streamWordsContaining(pattern);
+		}
+		return streamWordsContaining.count(call(streamWordsContaining, () -> trie.streamWordsContaining(pattern), words -> 0));
+	}
+
+	@Override
+	public Set<String> findWordsMatching(String pattern, int minLength, int maxLength) {
+		if (!enabled) {
+			return trie.findWordsMatching(pattern, minLength, maxLength);
+		}
+		return call(findWordsMatching, () -> trie.findWordsMatching(pattern, minLength, maxLength), Set::size);
+	}
+
+	@Override
+	public Stream<String> streamWordsMatching(String pattern, int minLength, int maxLength) {
+		if (!enabled) {
+			return trie.streamWordsMatching(pattern, minLength, maxLength);
+		}
+		return streamWordsMatching.count(call(streamWordsMatching, () -> trie.streamWordsMatching(pattern, minLength, maxLength), words -> 0));
+	}
+
+	@Override
+	public Set<String> findWordsEndingWith(String suffix) {
+		if (!enabled) {
+			return trie.findWordsEndingWith(suffix);
+		}
+		return call(findWordsEndingWith, () -> trie.findWordsEndingWith(suffix), Set::size);
+	}
+
+	@Override
+	public Stream<String> streamWordsEndingWith(String suffix) {
+		if (!enabled) {
+			return trie.streamWordsEndingWith(suffix);
+		}
+		return streamWordsEndingWith.count(call(streamWordsEndingWith, () -> trie.streamWordsEndingWith(suffix), words -> 0));
+	}
+
+	@Override
+	public Set<String> findCloseWordsChangedLetters(String word, int distance) {
+		if (!enabled) {
+			return trie.findCloseWordsChangedLetters(word, distance);
+		}
+		return call(findCloseWordsChangedLetters, () -> trie.findCloseWordsChangedLetters(word, distance), Set::size);
+	}
+
+	@Override
+	public Set<String> findCloseWordsAddedLetters(String word, int distance) {
+		if (!enabled) {
+			return trie.findCloseWordsAddedLetters(word, distance);
+		}
+		return call(findCloseWordsAddedLetters, () -> trie.findCloseWordsAddedLetters(word, distance), Set::size);
+	}
+
+	@Override
+	public Set<String> findCloseWordsRemovedLetters(String word, int distance) {
+		if (!enabled) {
+			return trie.findCloseWordsRemovedLetters(word, distance);
+		}
+		return call(findCloseWordsRemovedLetters, () -> trie.findCloseWordsRemovedLetters(word, distance), Set::size);
+	}
+
+	@Override
+	public Set<String> findCloseWordsAllChanges(String word, int distance) {
+		if (!enabled) {
+			return trie.findCloseWordsAllChanges(word, distance);
+		}
+		return call(findCloseWordsAllChanges, () -> trie.findCloseWordsAllChanges(word, distance), Set::size);
+	}
+
+	@Override
+	public Set<String> findCloseWords(String word, int distance, EditCosts costs) {
+		if (!enabled) {
+			return trie.findCloseWords(word, distance, costs);
+		}
+		return call(findCloseWords, () -> trie.findCloseWords(word, distance, costs), Set::size);
+	}
+
+	@Override
+	public Stream<String> streamCloseWords(String word, int distance, EditCosts costs) {
+		if (!enabled) {
+			return trie.streamCloseWords(word, distance, costs);
+		}
+		return streamCloseWords.count(call(streamCloseWords, () -> trie.streamCloseWords(word, distance, costs), words -> 0));
+	}
+
+	@Override
+	public int countWordsWithPrefix(String prefix) {
+		if (!enabled) {
+			return trie.countWordsWithPrefix(prefix);
+		}
+		return call(countWordsWithPrefix, () -> trie.countWordsWithPrefix(prefix), count -> 1);
+	}
+
+	@Override
+	public int countLeafNotes() {
+		if (!enabled) {
+			return trie.countLeafNotes();
+		}
+		return call(countLeafNotes, () -> trie.countLeafNotes(), count -> 1);
+	}
+
+	@Override
+	public int getNumDeeperThan(int depth) {
+		if (!enabled) {
+			return trie.getNumDeeperThan(depth);
+		}
+		return call(getNumDeeperThan, () -> trie.getNumDeeperThan(depth), count -> 1);
+	}
+}
@@ -0,0 +1,27 @@
+package tries.impl;
+
+import java.util.Map;
+
+/**
+ * The management interface of a MeteredTrie, as it is seen over JMX.
+ */
+public interface MeteredTrieMXBean {
+
+	public boolean isEnabled();
+
+	public void setEnabled(boolean enabled);
+
+	/**
+	 * @return the statistics of every operation called since the last reset,
+	 *         by method name
+	 */
+	public Map<String, MeteredTrie.Stats> getOperations();
+
+	/**
+	 * @return the memory statistics of the metered trie, or null when it is
+	 *         not a Trie
+	 */
+	public Trie.MemoryStats getMemoryStats();
+
+	public void reset();
+}
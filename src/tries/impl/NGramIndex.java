@@ -0,0 +1,171 @@
+package tries.impl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Posting lists of the words containing each n-gram of one to three letters.
+ * Words are numbered in insertion order and the numbers index the words and
+ * their nodes, so every posting list stays sorted and adding a word only
+ * appends to lists. The words are kept as strings, so that answering a query
+ * does not have to rebuild each one from its node.
+ *
+ * A pattern of up to three letters is answered exactly by its own list. A
+ * longer pattern only has to check the words on the list of its rarest
+ * trigram, instead of every path in the trie.
+ *
+ * Removing a word only clears its entry in the word table, and the lists
+ * skip cleared entries until compact() renumbers the words that are left.
+ * compact() builds new arrays rather than rewriting the old ones, so a stream
+ * that is still being read goes on seeing the words it started with, apart
+ * from those removed in the meantime.
+ */
+final class NGramIndex {
+	private static final int N = 3;
+
+	private String[] words = new String[16];
+	private Trie[] nodes = new Trie[16];
+	private int size;
+	private final Map<Long, Postings> postings = new HashMap<>();
+	// the id of each indexed word node, so that it can be removed
+	private final Map<Trie, Integer> nodeIds = new HashMap<>();
+
+	/*
+	 * The ids of the words containing one n-gram, in increasing order.
+	 */
+	private static final class Postings {
+		private int[] ids = new int[2];
+		private int size;
+
+		void add(int id) {
+			if (size > 0 && ids[size - 1] == id) {
+				// the n-gram occurs more than once in this word
+				return;
+			}
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			ids[size++] = id;
+		}
+	}
+
+	/*
+	 * Pack the n-gram between from and to into a key. The length goes in the
+	 * high bits so that n-grams of different lengths never collide.
+	 */
+	private static long key(CharSequence word, int from, int to) {
+		long key = to - from;
+		for (int i = from; i < to; i++) {
+			key = (key << 16) | word.charAt(i);
+		}
+		return key;
+	}
+
+	/*
+	 * Index the word between from and to, which ends at the given node.
+	 */
+	void add(Trie node, CharSequence word, int from, int to) {
+		if (size == words.length) {
+			words = Arrays.copyOf(words, size * 2);
+			nodes = Arrays.copyOf(nodes, size * 2);
+		}
+		int id = size++;
+		words[id] = word.subSequence(from, to).toString();
+		nodes[id] = node;
+		nodeIds.put(node, id);
+		for (int start = from; start < to; start++) {
+			int last = Math.min(to, start + N);
+			for (int end = start + 1; end <= last; end++) {
+				Long key = key(word, start, end);
+				Postings list = postings.get(key);
+				if (list == null) {
+					list = new Postings();
+					postings.put(key, list);
+				}
+				list.add(id);
+			}
+		}
+	}
+
+	/*
+	 * Remove the word ending at the given node.
+	 */
+	void remove(Trie node) {
+		Integer id = nodeIds.remove(node);
+		if (id != null) {
+			words[id] = null;
+			nodes[id] = null;
+		}
+	}
+
+	/*
+	 * Renumber the words that are left after removals and drop the removed
+	 * ones from every list. Numbers keep their order, so the lists stay
+	 * sorted.
+	 */
+	void compact() {
+		int[] renumbered = new int[size];
+		String[] liveWords = new String[Math.max(nodeIds.size(), 16)];
+		Trie[] liveNodes = new Trie[liveWords.length];
+		int live = 0;
+		for (int id = 0; id < size; id++) {
+			if (words[id] == null) {
+				renumbered[id] = -1;
+			} else {
+				renumbered[id] = live;
+				liveWords[live] = words[id];
+				liveNodes[live] = nodes[id];
+				nodeIds.put(nodes[id], live);
+				live++;
+			}
+		}
+		words = liveWords;
+		nodes = liveNodes;
+		size = live;
+		postings.values().removeIf(list -> {
+			int[] ids = new int[Math.max(list.size, 1)];
+			int kept = 0;
+			for (int i = 0; i < list.size; i++) {
+				int id = renumbered[list.ids[i]];
+				if (id >= 0) {
+					ids[kept++] = id;
+				}
+			}
+			list.ids = Arrays.copyOf(ids, Math.max(kept, 1));
+			list.size = kept;
+			return kept == 0;
+		});
+	}
+
+	/*
+	 * Return the indexed words that contain the pattern, as a lazy stream
+	 * over the words and list as they are now. Words added later are not
+	 * returned.
+	 */
+	Stream<String> wordsContaining(String pattern) {
+		String[] words = this.words;
+		int length = pattern.length();
+		if (length == 0) {
+			return IntStream.range(0, size).mapToObj(id -> words[id]).filter(Objects::nonNull);
+		}
+		int n = Math.min(N, length);
+		Postings candidates = null;
+		for (int start = 0; start + n <= length; start++) {
+			Postings list = postings.get(key(pattern, start, start + n));
+			if (list == null) {
+				return Stream.empty();
+			}
+			if (candidates == null || list.size < candidates.size) {
+				candidates = list;
+			}
+		}
+		int[] ids = candidates.ids;
+		Stream<String> found = IntStream.range(0, candidates.size).mapToObj(i -> words[ids[i]]).filter(Objects::nonNull);
+		// the list of a pattern of up to N letters holds exactly the words containing it
+		return length <= N ? found : found.filter(word -> word.contains(pattern));
+	}
+}
@@ -0,0 +1,59 @@
+package tries.impl;
+
+/**
+ * How a WordIterator reads the nodes of a trie, which are of type N. The
+ * children of a node are read once, as a C, when the walk reaches the node,
+ * so that a trie that replaces its children as it changes is walked from a
+ * consistent snapshot of them. Children are numbered in letter order and a
+ * child can be null, for tries that leave empty slots. An edge can carry
+ * several letters, for tries that compress them.
+ *
+ * Tries whose nodes are numbered records in flat storage read them as
+ * Integers.
+ */
+interface Nodes<N, C> {
+	boolean isWord(N node);
+
+	C children(N node);
+
+	int childCount(C children);
+
+	/*
+	 * Return the child at the given index, or null if the slot is empty.
+	 */
+	N childAt(C children, int index);
+
+	/*
+	 * Return the first letter on the edge to the child at the given index.
+	 */
+	char letterAt(C children, int index);
+
+	/*
+	 * Return the first index whose letter is not smaller than the given one,
+	 * or childCount if there is none.
+	 */
+	default int indexFor(C children, char letter) {
+		int count = childCount(children);
+		int index = 0;
+		while (index < count && letterAt(children, index) < letter) {
+			index++;
+		}
+		return index;
+	}
+
+	/*
+	 * Return the number of letters on the edge to the given child, which is
+	 * at the given index.
+	 */
+	default int labelLength(C children, int index, N child) {
+		return 1;
+	}
+
+	/*
+	 * Copy the letters on the edge to the given child, which is at the given
+	 * index, into path starting at at.
+	 */
+	default void copyLabel(C children, int index, N child, char[] path, int at) {
+		path[at] = letterAt(children, index);
+	}
+}
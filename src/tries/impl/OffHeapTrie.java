@@ -0,0 +1,462 @@
+package tries.impl;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import tries.ITrie;
+
+/**
+ * A mutable ITrie whose nodes live outside the Java heap, in an arena of
+ * direct buffers, so that a large dictionary is a handful of objects to the
+ * garbage collector instead of one or more per node.
+ *
+ * Nodes are fixed size records addressed by int offsets into the arena:
+ *
+ * <pre>
+ * parent    the offset of the parent record, or -1 for the root
+ * block     the offset of the block of children
+ * count     the number of children
+ * letter    the letter of the edge from the parent, two bytes
+ * isWord    one byte
+ * </pre>
+ *
+ * A block holds the offsets of the children and then their letters, in
+ * letter order, with room for a power of two of them. A node that outgrows
+ * its block moves to one twice the size, and the old block is kept on a
+ * free list for the next node that needs one of that size. Records and
+ * blocks are never split across the buffers of the arena.
+ *
+ * Weights are not kept, and words cannot be removed. close() frees the
+ * arena at once rather than when the garbage collector gets to it, after
+ * which every node of the trie throws IllegalStateException. Like Trie, it
+ * is not safe for use by several threads, and close in particular must not
+ * race with anything else.
+ */
+public final class OffHeapTrie extends AbstractTrie implements AutoCloseable {
+	private static final int PARENT = 0;
+	private static final int BLOCK = 4;
+	private static final int COUNT = 8;
+	private static final int LETTER = 12;
+	private static final int WORD = 14;
+	private static final int RECORD = 16;
+
+	private final Arena arena;
+	private final int node;
+
+	/*
+	 * The direct buffers that hold the records and blocks of one trie. An
+	 * offset is the index of its buffer in the high bits and the position in
+	 * the buffer in the low bits.
+	 */
+	private static final class Arena {
+		private static final int CHUNK_BITS = 20;
+		private static final int CHUNK = 1 << CHUNK_BITS;
+		private static final int MASK = CHUNK - 1;
+		// the largest block, for 65536 children, fits in a chunk
+		private static final int CLASSES = 17;
+		// Unsafe.invokeCleaner frees a direct buffer on Java 9 and later
+		private static final Object UNSAFE;
+		private static final Method INVOKE_CLEANER;
+
+		static {
+			Object unsafe = null;
+			Method invokeCleaner = null;
+			try {
+				Class<?> type = Class.forName("sun.misc.Unsafe");
+				Field field = type.getDeclaredField("theUnsafe");
+				field.setAccessible(true);
+				unsafe = field.get(null);
+				invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				// the buffers are freed when they are collected instead
+			}
+			UNSAFE = unsafe;
+			INVOKE_CLEANER = invokeCleaner;
+		}
+
+		private ByteBuffer[] chunks = new ByteBuffer[4];
+		private int chunkCount;
+		// the offset where the next allocation goes
+		private int top;
+		// free[k] is the offset of the first free block with room for 1 << k children, or -1
+		private final int[] free = new int[CLASSES];
+
+		Arena() {
+			Arrays.fill(free, -1);
+		}
+
+		private ByteBuffer chunk(int offset) {
+			if (chunks == null) {
+				throw new IllegalStateException("This OffHeapTrie has been closed");
+			}
+			return chunks[offset >>> CHUNK_BITS];
+		}
+
+		int getInt(int offset) {
+			return chunk(offset).getInt(offset & MASK);
+		}
+
+		void putInt(int offset, int value) {
+			chunk(offset).putInt(offset & MASK, value);
+		}
+
+		char getChar(int offset) {
+			return chunk(offset).getChar(offset & MASK);
+		}
+
+		void putChar(int offset, char value) {
+			chunk(offset).putChar(offset & MASK, value);
+		}
+
+		byte get(int offset) {
+			return chunk(offset).get(offset & MASK);
+		}
+
+		void put(int offset, byte value) {
+			chunk(offset).put(offset & MASK, value);
+		}
+
+		/*
+		 * Return the offset of size new bytes, starting a new buffer if they
+		 * do not fit in the current one.
+		 */
+		int allocate(int size) {
+			if (chunks == null) {
+				throw new IllegalStateException("This OffHeapTrie has been closed");
+			}
+			if ((top & MASK) + size > CHUNK || top >>> CHUNK_BITS == chunkCount) {
+				if ((top & MASK) != 0) {
+					top = (top | MASK) + 1;
+				}
+				if (top >>> CHUNK_BITS == chunkCount) {
+					if (top < 0) {
+						throw new IllegalStateException("An OffHeapTrie cannot grow beyond 2GB");
+					}
+					if (chunkCount == chunks.length) {
+						chunks = Arrays.copyOf(chunks, chunkCount * 2);
+					}
+					chunks[chunkCount++] = ByteBuffer.allocateDirect(CHUNK).order(ByteOrder.nativeOrder());
+				}
+			}
+			int offset = top;
+			top = top + size;
+			return offset;
+		}
+
+		int newRecord(int parent, char letter) {
+			int record = allocate(RECORD);
+			putInt(record + PARENT, parent);
+			putInt(record + COUNT, 0);
+			putChar(record + LETTER, letter);
+			put(record + WORD, (byte) 0);
+			return record;
+		}
+
+		/*
+		 * Return the offset of a block with room for 1 << size children.
+		 * Children come first so that their offsets are aligned.
+		 */
+		int newBlock(int size) {
+			int block = free[size];
+			if (block >= 0) {
+				free[size] = getInt(block);
+				return block;
+			}
+			return allocate(((6 << size) + 7) & ~7);
+		}
+
+		void freeBlock(int block, int size) {
+			putInt(block, free[size]);
+			free[size] = block;
+		}
+
+		long size() {
+			return (long) chunkCount * CHUNK;
+		}
+
+		void close() {
+			if (chunks == null) {
+				return;
+			}
+			ByteBuffer[] freed = Arrays.copyOf(chunks, chunkCount);
+			chunks = null;
+			if (INVOKE_CLEANER != null) {
+				for (ByteBuffer chunk : freed) {
+					try {
+						INVOKE_CLEANER.invoke(UNSAFE, chunk);
+					} catch (ReflectiveOperationException e) {
+						// left to the garbage collector
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create an empty trie with an arena of its own.
+	 */
+	public OffHeapTrie() {
+		this.arena = new Arena();
+		this.node = arena.newRecord(-1, (char) 0);
+	}
+
+	private OffHeapTrie(Arena arena, int node) {
+		this.arena = arena;
+		this.node = node;
+	}
+
+	/**
+	 * Free the native memory of the whole trie this node belongs to. Every
+	 * node of it throws IllegalStateException afterwards.
+	 */
+	@Override
+	public void close() {
+		arena.close();
+	}
+
+	/**
+	 * Return the number of bytes of native memory the trie holds.
+	 * @return
+	 */
+	public long offHeapSize() {
+		return arena.size();
+	}
+
+	/*
+	 * Return k such that the block of a node with count children, at least
+	 * one, has room for 1 << k of them.
+	 */
+	private static int sizeFor(int count) {
+		return 32 - Integer.numberOfLeadingZeros(count - 1);
+	}
+
+	private boolean isWord(int node) {
+		return arena.get(node + WORD) != 0;
+	}
+
+	private int childCount(int node) {
+		return arena.getInt(node + COUNT);
+	}
+
+	private char letterAt(int node, int index) {
+		int block = arena.getInt(node + BLOCK);
+		return arena.getChar(block + (4 << sizeFor(childCount(node))) + 2 * index);
+	}
+
+	private int childAt(int node, int index) {
+		return arena.getInt(arena.getInt(node + BLOCK) + 4 * index);
+	}
+
+	/*
+	 * Return the index of the child with the given letter, or -(insertion
+	 * point) - 1 if there is none.
+	 */
+	private int search(int node, char letter) {
+		int count = childCount(node);
+		if (count == 0) {
+			return -1;
+		}
+		int letters = arena.getInt(node + BLOCK) + (4 << sizeFor(count));
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			char key = arena.getChar(letters + 2 * mid);
+			if (key < letter) {
+				low = mid + 1;
+			} else if (key > letter) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/*
+	 * Return the offset of the child with the given letter, or -1.
+	 */
+	private int child(int node, char letter) {
+		int index = search(node, letter);
+		return index < 0 ? -1 : childAt(node, index);
+	}
+
+	/*
+	 * Return the offset of the child with the given letter, adding it if
+	 * there is none.
+	 */
+	private int addChild(int node, char letter) {
+		int index = search(node, letter);
+		if (index >= 0) {
+			return childAt(node, index);
+		}
+		index = -index - 1;
+		int count = childCount(node);
+		int size = sizeFor(count);
+		int block = arena.getInt(node + BLOCK);
+		if (count == 0 || count == 1 << size) {
+			// full, so move to a block twice the size with a gap at index
+			int newSize = count == 0 ? 0 : size + 1;
+			int newBlock = arena.newBlock(newSize);
+			for (int i = 0; i < count; i++) {
+				int to = i < index ? i : i + 1;
+				arena.putInt(newBlock + 4 * to, arena.getInt(block + 4 * i));
+				arena.putChar(newBlock + (4 << newSize) + 2 * to, arena.getChar(block + (4 << size) + 2 * i));
+			}
+			if (count > 0) {
+				arena.freeBlock(block, size);
+			}
+			block = newBlock;
+			size = newSize;
+			arena.putInt(node + BLOCK, block);
+		} else {
+			for (int i = count; i > index; i--) {
+				arena.putInt(block + 4 * i, arena.getInt(block + 4 * (i - 1)));
+				arena.putChar(block + (4 << size) + 2 * i, arena.getChar(block + (4 << size) + 2 * (i - 1)));
+			}
+		}
+		int child = arena.newRecord(node, letter);
+		arena.putInt(block + 4 * index, child);
+		arena.putChar(block + (4 << size) + 2 * index, letter);
+		arena.putInt(node + COUNT, count + 1);
+		return child;
+	}
+
+	/*
+	 * Return the offset of the node at the end of the given range, or -1.
+	 */
+	private int walk(CharSequence path, int from, int to) {
+		int node = this.node;
+		for (int i = from; i < to && node >= 0; i++) {
+			node = child(node, path.charAt(i));
+		}
+		return node;
+	}
+
+	@Override
+	public void insert(String word) {
+		insert(word, 0, word.length());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#insert(java.lang.CharSequence, int, int)
+	 */
+	@Override
+	public void insert(CharSequence word, int from, int to) {
+		int node = this.node;
+		for (int i = from; i < to; i++) {
+			node = addChild(node, word.charAt(i));
+		}
+		arena.put(node + WORD, (byte) 1);
+	}
+
+	@Override
+	public boolean hasChild(char letter) {
+		return child(node, letter) >= 0;
+	}
+
+	@Override
+	public ITrie getChild(char letter) {
+		int child = child(node, letter);
+		return child < 0 ? null : new OffHeapTrie(arena, child);
+	}
+
+	@Override
+	public ITrie getParent() {
+		int parent = arena.getInt(node + PARENT);
+		return parent < 0 ? null : new OffHeapTrie(arena, parent);
+	}
+
+	@Override
+	public ITrie followPath(String path) {
+		return followPath(path, 0, path.length());
+	}
+
+	@Override
+	public ITrie followPath(CharSequence path, int from, int to) {
+		int end = walk(path, from, to);
+		return end < 0 ? null : new OffHeapTrie(arena, end);
+	}
+
+	@Override
+	public boolean contains(String word) {
+		return contains(word, 0, word.length());
+	}
+
+	@Override
+	public boolean contains(CharSequence word, int from, int to) {
+		int end = walk(word, from, to);
+		return end >= 0 && isWord(end);
+	}
+
+	@Override
+	WordIterator<?, ?> words(String prefix) {
+		int start = walk(prefix, 0, prefix.length());
+		return start < 0 ? null : new WordIterator<>(new Records(), start, prefix);
+	}
+
+	@Override
+	public int countLeafNotes() {
+		return countLeaves(node);
+	}
+
+	private int countLeaves(int node) {
+		int count = childCount(node);
+		if (count == 0) {
+			return 1;
+		}
+		int leaves = 0;
+		for (int i = 0; i < count; i++) {
+			leaves = leaves + countLeaves(childAt(node, i));
+		}
+		return leaves;
+	}
+
+	@Override
+	public int getNumDeeperThan(int depth) {
+		return countDeeperThan(node, depth);
+	}
+
+	private int countDeeperThan(int node, int depth) {
+		int count = depth < 0 ? 1 : 0;
+		for (int i = 0; i < childCount(node); i++) {
+			count = count + countDeeperThan(childAt(node, i), depth - 1);
+		}
+		return count;
+	}
+
+	/*
+	 * How a WordIterator reads the records, by their offsets into the arena.
+	 */
+	private final class Records implements Nodes<Integer, Integer> {
+		@Override
+		public boolean isWord(Integer node) {
+			return OffHeapTrie.this.isWord(node);
+		}
+
+		@Override
+		public Integer children(Integer node) {
+			return node;
+		}
+
+		@Override
+		public int childCount(Integer node) {
+			return OffHeapTrie.this.childCount(node);
+		}
+
+		@Override
+		public Integer childAt(Integer node, int index) {
+			return OffHeapTrie.this.childAt(node, index);
+		}
+
+		@Override
+		public char letterAt(Integer node, int index) {
+			return OffHeapTrie.this.letterAt(node, index);
+		}
+	}
+}
@@ -0,0 +1,446 @@
+package tries.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Spliterator;
+
+import tries.ITrie;
+
+/**
+ * An immutable ITrie. Adding or removing words returns a new version and
+ * leaves this one as it was, so a reader can keep a version for as long as
+ * it likes, without locking, while writers publish newer ones.
+ *
+ * Versions share structure: {@link #with(String)} copies only the nodes on
+ * the path to the word and points the copies at the same untouched subtrees
+ * as before, so each version costs memory in proportion to the length of the
+ * word rather than the size of the trie.
+ *
+ * Since a node can belong to many versions it has no parent of its own.
+ * Nodes are cursors that remember the cursor they were reached from, so
+ * getParent returns the node one letter back towards the root of the same
+ * version, and null for the root. Calling with or without on a cursor below
+ * the root adds or removes the word relative to that node, copies the path
+ * back up through the cursors, and returns the root of the new version.
+ * Cursors are created by getChild and followPath and are not identical across
+ * calls.
+ *
+ * The ITrie insert method cannot return the new version, so it throws
+ * UnsupportedOperationException, as remove does.
+ */
+public final class PersistentTrie extends AbstractTrie {
+	private static final char[] NO_KEYS = new char[0];
+	private static final Node[] NO_CHILDREN = new Node[0];
+	private static final Node EMPTY = new Node(false, NO_KEYS, NO_CHILDREN);
+	// every word with nothing below it ends at this one shared node
+	private static final Node LEAF = new Node(true, NO_KEYS, NO_CHILDREN);
+
+	/*
+	 * A node, never changed once created. Children are kept by letter, in
+	 * sorted order.
+	 */
+	private static final class Node {
+		private final boolean isWord;
+		private final char[] keys;
+		private final Node[] children;
+
+		Node(boolean isWord, char[] keys, Node[] children) {
+			this.isWord = isWord;
+			this.keys = keys;
+			this.children = children;
+		}
+
+		Node child(char letter) {
+			int index = Arrays.binarySearch(keys, letter);
+			return index < 0 ? null : children[index];
+		}
+
+		Node withWord(boolean isWord) {
+			if (isWord == this.isWord) {
+				return this;
+			}
+			return keys.length == 0 ? leaf(isWord) : new Node(isWord, keys, children);
+		}
+
+		/*
+		 * Return a copy with the child for the given letter replaced, added,
+		 * or removed if the child is null.
+		 */
+		Node withChild(char letter, Node child) {
+			int index = Arrays.binarySearch(keys, letter);
+			if (index >= 0) {
+				if (child == null) {
+					if (keys.length == 1) {
+						return leaf(isWord);
+					}
+					char[] newKeys = new char[keys.length - 1];
+					Node[] newChildren = new Node[keys.length - 1];
+					System.arraycopy(keys, 0, newKeys, 0, index);
+					System.arraycopy(children, 0, newChildren, 0, index);
+					System.arraycopy(keys, index + 1, newKeys, index, newKeys.length - index);
+					System.arraycopy(children, index + 1, newChildren, index, newKeys.length - index);
+					return new Node(isWord, newKeys, newChildren);
+				}
+				// the keys do not change, so the copy shares them
+				Node[] newChildren = children.clone();
+				newChildren[index] = child;
+				return new Node(isWord, keys, newChildren);
+			}
+			if (child == null) {
+				return this;
+			}
+			index = -index - 1;
+			char[] newKeys = new char[keys.length + 1];
+			Node[] newChildren = new Node[keys.length + 1];
+			System.arraycopy(keys, 0, newKeys, 0, index);
+			System.arraycopy(children, 0, newChildren, 0, index);
+			newKeys[index] = letter;
+			newChildren[index] = child;
+			System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+			System.arraycopy(children, index, newChildren, index + 1, keys.length - index);
+			return new Node(isWord, newKeys, newChildren);
+		}
+
+		static Node leaf(boolean isWord) {
+			return isWord ? LEAF : EMPTY;
+		}
+
+		/*
+		 * Return true if there is no word at or below this node.
+		 */
+		boolean isEmpty() {
+			return !isWord && keys.length == 0;
+		}
+	}
+
+	private final Node node;
+	private final PersistentTrie parent;
+	// the letter from the parent to this node
+	private final char letter;
+
+	/**
+	 * Create an empty trie.
+	 */
+	public PersistentTrie() {
+		this(EMPTY, null, (char) 0);
+	}
+
+	private PersistentTrie(Node node, PersistentTrie parent, char letter) {
+		this.node = node;
+		this.parent = parent;
+		this.letter = letter;
+	}
+
+	/**
+	 * Return a PersistentTrie of the words in the given ITrie. A Trie is
+	 * copied node by node; any other ITrie word by word.
+	 * @param trie
+	 * @return
+	 */
+	public static PersistentTrie of(ITrie trie) {
+		if (trie instanceof Trie) {
+			return new PersistentTrie(copy((Trie) trie), null, (char) 0);
+		}
+		return new PersistentTrie().withAll(trie.findAllWords());
+	}
+
+	private static Node copy(Trie node) {
+		char[] keys = new char[node.childSlots()];
+		Node[] children = new Node[node.childSlots()];
+		int size = 0;
+		for (int slot = 0; slot < node.childSlots(); slot++) {
+			Trie child = node.childAt(slot);
+			if (child != null) {
+				keys[size] = node.letterAt(slot);
+				children[size++] = copy(child);
+			}
+		}
+		if (size == 0) {
+			return Node.leaf(node.isWord());
+		}
+		return new Node(node.isWord(), Arrays.copyOf(keys, size), Arrays.copyOf(children, size));
+	}
+
+	/**
+	 * Return the version with the given word added, relative to this node.
+	 * This version is returned if it already has the word.
+	 * @param word
+	 * @return the root of the new version
+	 */
+	public PersistentTrie with(String word) {
+		return replace(with(node, word, 0));
+	}
+
+	private static Node with(Node node, String word, int index) {
+		if (index == word.length()) {
+			return node.withWord(true);
+		}
+		char letter = word.charAt(index);
+		Node child = node.child(letter);
+		Node updated = with(child == null ? EMPTY : child, word, index + 1);
+		return updated == child ? node : node.withChild(letter, updated);
+	}
+
+	/**
+	 * Return the version with all of the given words added, relative to this
+	 * node. The words are merged in one pass, so every node that changes is
+	 * copied once, however many of the words pass through it.
+	 * @param words
+	 * @return the root of the new version
+	 */
+	public PersistentTrie withAll(Collection<String> words) {
+		String[] sorted = words.toArray(new String[0]);
+		Arrays.sort(sorted);
+		return replace(withAll(node, sorted, 0, sorted.length, 0));
+	}
+
+	/*
+	 * Add the words between from and to, which are sorted and all share
+	 * their first depth letters, below the given node.
+	 */
+	private static Node withAll(Node node, String[] words, int from, int to, int depth) {
+		boolean isWord = node.isWord;
+		int start = from;
+		while (start < to && words[start].length() == depth) {
+			isWord = true;
+			start++;
+		}
+		if (start == to) {
+			return node.withWord(isWord);
+		}
+		char[] keys = new char[node.keys.length + to - start];
+		Node[] children = new Node[keys.length];
+		int size = 0;
+		int existing = 0;
+		boolean changed = isWord != node.isWord;
+		while (start < to) {
+			char letter = words[start].charAt(depth);
+			int end = start + 1;
+			while (end < to && words[end].charAt(depth) == letter) {
+				end++;
+			}
+			while (existing < node.keys.length && node.keys[existing] < letter) {
+				keys[size] = node.keys[existing];
+				children[size++] = node.children[existing++];
+			}
+			Node child = EMPTY;
+			if (existing < node.keys.length && node.keys[existing] == letter) {
+				child = node.children[existing++];
+			}
+			Node updated = withAll(child, words, start, end, depth + 1);
+			changed |= updated != child;
+			keys[size] = letter;
+			children[size++] = updated;
+			start = end;
+		}
+		if (!changed) {
+			return node;
+		}
+		while (existing < node.keys.length) {
+			keys[size] = node.keys[existing];
+			children[size++] = node.children[existing++];
+		}
+		return new Node(isWord, Arrays.copyOf(keys, size), Arrays.copyOf(children, size));
+	}
+
+	/**
+	 * Return the version without the given word, relative to this node.
+	 * Nodes left with no word at or below them are left out of the new
+	 * version. This version is returned if it does not have the word.
+	 * @param word
+	 * @return the root of the new version
+	 */
+	public PersistentTrie without(String word) {
+		Node updated = without(node, word, 0);
+		return replace(updated == null ? EMPTY : updated);
+	}
+
+	/*
+	 * Return the node without the word, null if nothing is left at or below
+	 * it, or the node itself if the word is not there.
+	 */
+	private static Node without(Node node, String word, int index) {
+		if (index == word.length()) {
+			if (!node.isWord) {
+				return node;
+			}
+			Node updated = node.withWord(false);
+			return updated.isEmpty() ? null : updated;
+		}
+		char letter = word.charAt(index);
+		Node child = node.child(letter);
+		if (child == null) {
+			return node;
+		}
+		Node updated = without(child, word, index + 1);
+		if (updated == child) {
+			return node;
+		}
+		Node copy = node.withChild(letter, updated);
+		return copy.isEmpty() ? null : copy;
+	}
+
+	/*
+	 * Return the root of the version in which this node is replaced by the
+	 * given one, copying the path back up through the cursors. An empty
+	 * node below the root is left out.
+	 */
+	private PersistentTrie replace(Node updated) {
+		if (updated == node) {
+			return root();
+		}
+		PersistentTrie cursor = this;
+		while (cursor.parent != null) {
+			Node child = updated.isEmpty() ? null : updated;
+			updated = cursor.parent.node.withChild(cursor.letter, child);
+			cursor = cursor.parent;
+		}
+		return new PersistentTrie(updated, null, (char) 0);
+	}
+
+	private PersistentTrie root() {
+		PersistentTrie cursor = this;
+		while (cursor.parent != null) {
+			cursor = cursor.parent;
+		}
+		return cursor;
+	}
+
+	/*
+	 * Return the node at the end of the given range, or null.
+	 */
+	private Node walk(CharSequence path, int from, int to) {
+		Node current = node;
+		for (int i = from; i < to && current != null; i++) {
+			current = current.child(path.charAt(i));
+		}
+		return current;
+	}
+
+	@Override
+	public void insert(String word) {
+		throw new UnsupportedOperationException("A PersistentTrie is immutable, use with(word)");
+	}
+
+	@Override
+	public boolean hasChild(char letter) {
+		return node.child(letter) != null;
+	}
+
+	@Override
+	public ITrie getChild(char letter) {
+		Node child = node.child(letter);
+		return child == null ? null : new PersistentTrie(child, this, letter);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#getParent()
+	 */
+	@Override
+	public ITrie getParent() {
+		// the cursor this one was reached from, since nodes are shared between versions
+		return parent;
+	}
+
+	@Override
+	public ITrie followPath(String path) {
+		return followPath(path, 0, path.length());
+	}
+
+	@Override
+	public ITrie followPath(CharSequence path, int from, int to) {
+		PersistentTrie cursor = this;
+		for (int i = from; i < to; i++) {
+			char letter = path.charAt(i);
+			Node child = cursor.node.child(letter);
+			if (child == null) {
+				return null;
+			}
+			cursor = new PersistentTrie(child, cursor, letter);
+		}
+		return cursor;
+	}
+
+	@Override
+	public boolean contains(String word) {
+		return contains(word, 0, word.length());
+	}
+
+	@Override
+	public boolean contains(CharSequence word, int from, int to) {
+		Node end = walk(word, from, to);
+		return end != null && end.isWord;
+	}
+
+	@Override
+	WordIterator<?, ?> words(String prefix) {
+		Node end = walk(prefix, 0, prefix.length());
+		return end == null ? null : new WordIterator<>(NODES, end, prefix);
+	}
+
+	@Override
+	int characteristics() {
+		return SORTED_WORDS | Spliterator.IMMUTABLE;
+	}
+
+	@Override
+	public int countLeafNotes() {
+		return countLeaves(node);
+	}
+
+	private static int countLeaves(Node node) {
+		if (node.keys.length == 0) {
+			return 1;
+		}
+		int count = 0;
+		for (Node child : node.children) {
+			count = count + countLeaves(child);
+		}
+		return count;
+	}
+
+	@Override
+	public int getNumDeeperThan(int depth) {
+		return countDeeperThan(node, depth);
+	}
+
+	private static int countDeeperThan(Node node, int depth) {
+		int count = depth < 0 ? 1 : 0;
+		for (Node child : node.children) {
+			count = count + countDeeperThan(child, depth - 1);
+		}
+		return count;
+	}
+
+	/*
+	 * How a WordIterator reads the nodes, which never change.
+	 */
+	private static final Nodes<Node, Node> NODES = new Nodes<Node, Node>() {
+		@Override
+		public boolean isWord(Node node) {
+			return node.isWord;
+		}
+
+		@Override
+		public Node children(Node node) {
+			return node;
+		}
+
+		@Override
+		public int childCount(Node node) {
+			return node.keys.length;
+		}
+
+		@Override
+		public Node childAt(Node node, int index) {
+			return node.children[index];
+		}
+
+		@Override
+		public char letterAt(Node node, int index) {
+			return node.keys[index];
+		}
+	};
+}
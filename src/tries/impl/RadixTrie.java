@@ -0,0 +1,476 @@
+package tries.impl;
+
+import java.util.Arrays;
+
+import tries.ITrie;
+
+/**
+ * An ITrie with path compression (a radix or Patricia trie). A chain of
+ * nodes with one child each is stored as a single edge labelled with all of
+ * their letters, so the tail of "aardwolves" is one node rather than six.
+ *
+ * The ITrie methods still see one node per letter. A RadixTrie is a position
+ * in the tree: a stored node, or a virtual position partway along the edge
+ * into a stored node, given by how many letters above the node it lies.
+ * Counting from the node below keeps positions valid when an insert splits
+ * the edge above them. Positions at stored nodes are the same object every
+ * time; virtual positions are created as they are needed.
+ *
+ * Removing a word prunes the nodes left with no word below them but does
+ * not merge edges, so that positions stay valid; compact() merges them.
+ */
+public class RadixTrie extends AbstractTrie {
+	private static final char[] NO_KEYS = new char[0];
+	private static final Node[] NO_CHILDREN = new Node[0];
+
+	/*
+	 * A stored node. label holds the letters of the edge from the parent, the
+	 * last of which leads to this node; it is empty only for the root.
+	 * Children are kept by the first letter of their label, in sorted order.
+	 */
+	private static final class Node {
+		private char[] label;
+		private Node parent;
+		private boolean isWord;
+		private char[] keys = NO_KEYS;
+		private Node[] children = NO_CHILDREN;
+		private RadixTrie position;
+
+		Node(char[] label, Node parent) {
+			this.label = label;
+			this.parent = parent;
+		}
+
+		Node child(char letter) {
+			int index = Arrays.binarySearch(keys, letter);
+			return index < 0 ? null : children[index];
+		}
+
+		void addChild(Node child) {
+			int index = -Arrays.binarySearch(keys, child.label[0]) - 1;
+			char[] newKeys = new char[keys.length + 1];
+			Node[] newChildren = new Node[keys.length + 1];
+			System.arraycopy(keys, 0, newKeys, 0, index);
+			System.arraycopy(children, 0, newChildren, 0, index);
+			newKeys[index] = child.label[0];
+			newChildren[index] = child;
+			System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+			System.arraycopy(children, index, newChildren, index + 1, keys.length - index);
+			keys = newKeys;
+			children = newChildren;
+		}
+
+		void removeChild(Node child) {
+			int index = Arrays.binarySearch(keys, child.label[0]);
+			if (keys.length == 1) {
+				keys = NO_KEYS;
+				children = NO_CHILDREN;
+				return;
+			}
+			char[] newKeys = new char[keys.length - 1];
+			Node[] newChildren = new Node[keys.length - 1];
+			System.arraycopy(keys, 0, newKeys, 0, index);
+			System.arraycopy(children, 0, newChildren, 0, index);
+			System.arraycopy(keys, index + 1, newKeys, index, newKeys.length - index);
+			System.arraycopy(children, index + 1, newChildren, index, newKeys.length - index);
+			keys = newKeys;
+			children = newChildren;
+		}
+
+		/*
+		 * Return the position at this node, creating it the first time.
+		 */
+		RadixTrie position() {
+			if (position == null) {
+				position = new RadixTrie(this, 0);
+			}
+			return position;
+		}
+	}
+
+	private final Node node;
+	// how many letters above node this position is, 0 at the node itself
+	private final int above;
+
+	public RadixTrie() {
+		this.node = new Node(NO_KEYS, null);
+		this.above = 0;
+		node.position = this;
+	}
+
+	private RadixTrie(Node node, int above) {
+		this.node = node;
+		this.above = above;
+	}
+
+	/*
+	 * Return the position the given number of letters above the node, which
+	 * may lie on the edge of an ancestor.
+	 */
+	private static RadixTrie position(Node node, int above) {
+		while (above > 0 && above >= node.label.length) {
+			above -= node.label.length;
+			node = node.parent;
+		}
+		return above == 0 ? node.position() : new RadixTrie(node, above);
+	}
+
+	/*
+	 * Return this position with its node brought up to date, in case the
+	 * edge it lies on was split since it was created.
+	 */
+	private RadixTrie current() {
+		return above < node.label.length || above == 0 ? this : position(node, above);
+	}
+
+	/**
+	 * Return the number of stored nodes, counting each compressed edge once.
+	 * @return
+	 */
+	public int nodeCount() {
+		return countNodes(current().node);
+	}
+
+	private static int countNodes(Node node) {
+		int count = 1;
+		for (Node child : node.children) {
+			count = count + countNodes(child);
+		}
+		return count;
+	}
+
+	@Override
+	public void insert(String word) {
+		insert(word, 0, word.length());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#insert(java.lang.CharSequence, int, int)
+	 */
+	@Override
+	public void insert(CharSequence word, int from, int to) {
+		RadixTrie start = current();
+		Node node = start.above == 0 ? start.node : split(start.node, start.above);
+		int i = from;
+		while (i < to) {
+			Node child = node.child(word.charAt(i));
+			if (child == null) {
+				char[] label = new char[to - i];
+				for (int j = 0; j < label.length; j++) {
+					label[j] = word.charAt(i + j);
+				}
+				Node leaf = new Node(label, node);
+				leaf.isWord = true;
+				node.addChild(leaf);
+				return;
+			}
+			int matched = 1;
+			while (matched < child.label.length && i + matched < to && child.label[matched] == word.charAt(i + matched)) {
+				matched++;
+			}
+			node = matched == child.label.length ? child : split(child, child.label.length - matched);
+			i += matched;
+		}
+		node.isWord = true;
+	}
+
+	/*
+	 * Split the edge into the given node at the given number of letters
+	 * above it, and return the new node there. The node keeps its children
+	 * and its position object, so positions that count from it stay valid.
+	 */
+	private static Node split(Node node, int above) {
+		int length = node.label.length;
+		Node upper = new Node(Arrays.copyOf(node.label, length - above), node.parent);
+		int index = Arrays.binarySearch(node.parent.keys, node.label[0]);
+		node.parent.children[index] = upper;
+		node.label = Arrays.copyOfRange(node.label, length - above, length);
+		node.parent = upper;
+		upper.keys = new char[] { node.label[0] };
+		upper.children = new Node[] { node };
+		return upper;
+	}
+
+	@Override
+	public boolean hasChild(char letter) {
+		RadixTrie here = current();
+		if (here.above > 0) {
+			return here.node.label[here.node.label.length - here.above] == letter;
+		}
+		return here.node.child(letter) != null;
+	}
+
+	@Override
+	public ITrie getChild(char letter) {
+		return followPath(String.valueOf(letter));
+	}
+
+	@Override
+	public ITrie getParent() {
+		RadixTrie here = current();
+		if (here.node.parent == null) {
+			return null;
+		}
+		return position(here.node, here.above + 1);
+	}
+
+	@Override
+	public ITrie followPath(String path) {
+		return followPath(path, 0, path.length());
+	}
+
+	@Override
+	public ITrie followPath(CharSequence path, int from, int to) {
+		RadixTrie here = current();
+		Node node = here.node;
+		int above = here.above;
+		for (int i = from; i < to; i++) {
+			char letter = path.charAt(i);
+			if (above > 0) {
+				if (node.label[node.label.length - above] != letter) {
+					return null;
+				}
+				above--;
+			} else {
+				node = node.child(letter);
+				if (node == null) {
+					return null;
+				}
+				above = node.label.length - 1;
+			}
+		}
+		return above == 0 ? node.position() : new RadixTrie(node, above);
+	}
+
+	@Override
+	public boolean contains(String word) {
+		return contains(word, 0, word.length());
+	}
+
+	@Override
+	public boolean contains(CharSequence word, int from, int to) {
+		Node node = end(word, from, to);
+		return node != null && node.isWord;
+	}
+
+	/*
+	 * Return the stored node at the end of the given range, or null if the
+	 * range ends partway along an edge or leaves the tree.
+	 */
+	private Node end(CharSequence word, int from, int to) {
+		RadixTrie here = current();
+		Node node = here.node;
+		int above = here.above;
+		int i = from;
+		while (i < to) {
+			if (above == 0) {
+				node = node.child(word.charAt(i));
+				if (node == null) {
+					return null;
+				}
+				above = node.label.length;
+			}
+			// compare the rest of the edge in one go
+			int start = node.label.length - above;
+			int length = Math.min(above, to - i);
+			for (int j = 0; j < length; j++) {
+				if (node.label[start + j] != word.charAt(i + j)) {
+					return null;
+				}
+			}
+			above -= length;
+			i += length;
+		}
+		return above == 0 ? node : null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#remove(java.lang.String)
+	 */
+	@Override
+	public boolean remove(String word) {
+		Node node = end(word, 0, word.length());
+		if (node == null || !node.isWord) {
+			return false;
+		}
+		node.isWord = false;
+		prune(node);
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#removeAllWithPrefix(java.lang.String)
+	 */
+	@Override
+	public int removeAllWithPrefix(String prefix) {
+		RadixTrie end = (RadixTrie) followPath(prefix);
+		if (end == null) {
+			return 0;
+		}
+		// every word below a virtual position goes on through its node, so the whole node goes
+		Node node = end.node;
+		int removed = countWords(node);
+		if (node.parent == null) {
+			node.isWord = false;
+			node.keys = NO_KEYS;
+			node.children = NO_CHILDREN;
+			return removed;
+		}
+		node.parent.removeChild(node);
+		prune(node.parent);
+		return removed;
+	}
+
+	/*
+	 * Remove the given node and then its ancestors for as long as they are
+	 * left with no word at or below them. The root always stays.
+	 */
+	private static void prune(Node node) {
+		while (node.parent != null && !node.isWord && node.children.length == 0) {
+			node.parent.removeChild(node);
+			node = node.parent;
+		}
+	}
+
+	private static int countWords(Node node) {
+		int count = node.isWord ? 1 : 0;
+		for (Node child : node.children) {
+			count = count + countWords(child);
+		}
+		return count;
+	}
+
+	/**
+	 * Merge the edges that removing words has left with a single child and
+	 * no word, so that every chain of such nodes is one edge again. The
+	 * nodes above the merged ones go away, so positions other than the root
+	 * that were created before compacting must not be used afterwards.
+	 */
+	public void compact() {
+		Node root = current().node;
+		while (root.parent != null) {
+			root = root.parent;
+		}
+		compact(root);
+	}
+
+	private static void compact(Node node) {
+		for (int i = 0; i < node.children.length; i++) {
+			Node child = node.children[i];
+			// keep the lower node, which keeps its children, as split does
+			while (!child.isWord && child.children.length == 1) {
+				Node only = child.children[0];
+				char[] label = Arrays.copyOf(child.label, child.label.length + only.label.length);
+				System.arraycopy(only.label, 0, label, child.label.length, only.label.length);
+				only.label = label;
+				only.parent = node;
+				node.children[i] = only;
+				child = only;
+			}
+			compact(child);
+		}
+	}
+
+	@Override
+	WordIterator<?, ?> words(String prefix) {
+		RadixTrie end = (RadixTrie) followPath(prefix);
+		if (end == null) {
+			return null;
+		}
+		// the words below a virtual position all go on through the rest of its edge
+		Node node = end.node;
+		String start = prefix + new String(node.label, node.label.length - end.above, end.above);
+		return new WordIterator<>(NODES, node, start);
+	}
+
+	@Override
+	public int countLeafNotes() {
+		return countLeaves(current().node);
+	}
+
+	private static int countLeaves(Node node) {
+		if (node.children.length == 0) {
+			return 1;
+		}
+		int count = 0;
+		for (Node child : node.children) {
+			count = count + countLeaves(child);
+		}
+		return count;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#getNumDeeperThan(int)
+	 */
+	@Override
+	public int getNumDeeperThan(int depth) {
+		// counts one node per letter, as if no edges were compressed
+		RadixTrie here = current();
+		int count = depth < 0 ? 1 : 0;
+		count = count + Math.max(0, here.above - Math.max(depth, 0));
+		return count + countDeeperThan(here.node, here.above, depth);
+	}
+
+	/*
+	 * Count the positions below the given node, which is at the given depth,
+	 * that are deeper than depth.
+	 */
+	private static int countDeeperThan(Node node, int nodeDepth, int depth) {
+		int count = 0;
+		for (Node child : node.children) {
+			int childDepth = nodeDepth + child.label.length;
+			count = count + Math.max(0, childDepth - Math.max(depth, nodeDepth));
+			count = count + countDeeperThan(child, childDepth, depth);
+		}
+		return count;
+	}
+
+	/*
+	 * How a WordIterator reads the stored nodes, whose edges carry their
+	 * whole labels.
+	 */
+	private static final Nodes<Node, Node> NODES = new Nodes<Node, Node>() {
+		@Override
+		public boolean isWord(Node node) {
+			return node.isWord;
+		}
+
+		@Override
+		public Node children(Node node) {
+			return node;
+		}
+
+		@Override
+		public int childCount(Node node) {
+			return node.children.length;
+		}
+
+		@Override
+		public Node childAt(Node node, int index) {
+			return node.children[index];
+		}
+
+		@Override
+		public char letterAt(Node node, int index) {
+			return node.keys[index];
+		}
+
+		@Override
+		public int labelLength(Node node, int index, Node child) {
+			return child.label.length;
+		}
+
+		@Override
+		public void copyLabel(Node node, int index, Node child, char[] path, int at) {
+			System.arraycopy(child.label, 0, path, at, child.label.length);
+		}
+	};
+}
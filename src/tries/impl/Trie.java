@@ -2,16 +2,493 @@ package tries.impl;
 
 import java.util.*;
 import java.util.Set;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import tries.EditCosts;
 import tries.ITrie;
+import tries.WordPattern;
 
 public class Trie implements ITrie {
-	private Map<Character, Trie> children = new HashMap<Character, Trie>();
+	private static final char[] NO_KEYS = new char[0];
+	private static final Trie[] NO_CHILDREN = new Trie[0];
+	/*
+	 * Most nodes have exactly one child, so the one letter key arrays for ASCII
+	 * are shared between nodes. Key arrays are never modified in place, which
+	 * makes the sharing safe.
+	 */
+	private static final char[][] SINGLE_KEYS = new char[128][];
+	private static final int ALPHABET = 26;
+	/*
+	 * A sparse node with more children than this is switched to the dense
+	 * layout. At 12 children the two sorted arrays take roughly the same space
+	 * as a 26 slot table, and beyond that the table is both smaller and faster.
+	 */
+	private static final int DENSE_THRESHOLD = 12;
+
+	static {
+		for (char c = 0; c < SINGLE_KEYS.length; c++) {
+			SINGLE_KEYS[c] = new char[] { c };
+		}
+	}
+
+	/*
+	 * Children are kept in one of two layouts. A sparse node stores its child
+	 * letters in sorted order in keys, with the matching child at the same
+	 * index of children. A dense node has keys == null and a 26 slot children
+	 * table indexed by (letter - 'a'), where empty slots are null.
+	 */
+	private char[] keys = NO_KEYS;
+	private Trie[] children = NO_CHILDREN;
 	private Trie parent;
 	private boolean isWord = false;
+	// the weight of the word ending here, and the largest weight of any word at or below this node
+	private int weight;
+	private int maxWeight;
+	/*
+	 * The words, nodes and leaves at and below this node, and the length of
+	 * the longest path down from it, kept up to date by every change so that
+	 * the counting queries do not have to walk the subtree.
+	 */
+	private int wordCount;
+	private int nodeCount = 1;
+	private int leafCount = 1;
+	private int height;
+	// only set on a root, which keeps its depth counts and any secondary indexes here
+	private Indexes indexes;
+	// only set on a root, see setParallel
+	private boolean parallel;
+
+	/**
+	 * Optional secondary indexes that a root node keeps up to date on insert,
+	 * trading memory for faster queries.
+	 */
+	public enum Index {
+		/**
+		 * A reverse trie of every word, so that findWordsEndingWith walks the
+		 * suffix once and then only visits the words that end with it.
+		 */
+		SUFFIX,
+		/**
+		 * Posting lists of the words containing each n-gram of up to three
+		 * letters, so that findWordsContaining only looks at the words that
+		 * share the rarest n-gram of the pattern.
+		 */
+		SUBSTRING
+	}
+
+	/*
+	 * The number of nodes at each depth below a root node, and its secondary
+	 * indexes.
+	 */
+	private static final class Indexes {
+		// depths[d] is the number of nodes d levels below the root
+		private int[] depths = { 1 };
+		private Trie suffixes;
+		private NGramIndex substrings;
+
+		/*
+		 * Return whether there are indexes that have to see every word.
+		 */
+		boolean indexWords() {
+			return suffixes != null || substrings != null;
+		}
+
+		void addNodes(int from, int to) {
+			if (to >= depths.length) {
+				depths = Arrays.copyOf(depths, Math.max(to + 1, depths.length * 2));
+			}
+			for (int depth = from; depth <= to; depth++) {
+				depths[depth]++;
+			}
+		}
+
+		void removeNodes(int from, int to) {
+			for (int depth = from; depth <= to; depth++) {
+				depths[depth]--;
+			}
+		}
+
+		int countDeeperThan(int depth) {
+			int count = 0;
+			for (int d = depth + 1; d < depths.length; d++) {
+				count = count + depths[d];
+			}
+			return count;
+		}
+
+		/*
+		 * Forget every word and node below the root.
+		 */
+		void clear() {
+			depths = new int[] { 1 };
+			if (suffixes != null) {
+				suffixes = new Trie();
+			}
+			if (substrings != null) {
+				substrings = new NGramIndex();
+			}
+		}
+
+		/*
+		 * Index the word between from and to, which ends at the given node.
+		 */
+		void add(Trie node, CharSequence word, int from, int to) {
+			if (suffixes != null) {
+				char[] reversed = new char[to - from];
+				for (int i = from; i < to; i++) {
+					reversed[to - 1 - i] = word.charAt(i);
+				}
+				suffixes.add(new String(reversed), 0, reversed.length);
+			}
+			if (substrings != null) {
+				substrings.add(node, word, from, to);
+			}
+		}
+
+		/*
+		 * Remove the given word, which ended at the given node, from the
+		 * indexes.
+		 */
+		void remove(Trie node, CharSequence word) {
+			if (suffixes != null) {
+				Trie reversed = suffixes;
+				for (int i = word.length() - 1; i >= 0; i--) {
+					reversed = reversed.child(word.charAt(i));
+				}
+				reversed.removeWord();
+			}
+			if (substrings != null) {
+				substrings.remove(node);
+			}
+		}
+	}
 
 	public Trie() {
+		this.indexes = new Indexes();
+	}
+
+	/**
+	 * Create an empty root that maintains the given indexes.
+	 * @param indexes
+	 */
+	public Trie(Index... indexes) {
+		this.indexes = new Indexes();
+		for (Index index : indexes) {
+			switch (index) {
+			case SUFFIX:
+				this.indexes.suffixes = new Trie();
+				break;
+			case SUBSTRING:
+				this.indexes.substrings = new NGramIndex();
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Run the queries that walk the whole trie, or all of a subtree, in
+	 * parallel. Their work is split into fork-join tasks that run in the pool
+	 * of the calling thread, or in the common pool when it is not a fork-join
+	 * worker. Queries that an index answers stay on the calling thread.
+	 * @param parallel
+	 */
+	public void setParallel(boolean parallel) {
+		root().parallel = parallel;
+	}
+
+	private boolean isParallel() {
+		return root().parallel;
+	}
+
+	/*
+	 * Return the number of child slots. In the dense layout some of them are
+	 * empty, and childAt returns null for those.
+	 */
+	int childSlots() {
+		return children.length;
+	}
+
+	/*
+	 * Return the child stored at the given slot, or null if the slot is empty.
+	 */
+	Trie childAt(int slot) {
+		return children[slot];
+	}
 
+	/*
+	 * Return the letter of the child stored at the given slot.
+	 */
+	char letterAt(int slot) {
+		return keys == null ? (char) ('a' + slot) : keys[slot];
+	}
+
+	/*
+	 * Return the first slot whose letter is not smaller than the given one,
+	 * or childSlots() if there is none.
+	 */
+	int slotFor(char letter) {
+		if (keys == null) {
+			return Math.max(0, Math.min(ALPHABET, letter - 'a'));
+		}
+		int index = Arrays.binarySearch(keys, letter);
+		return index >= 0 ? index : -index - 1;
+	}
+
+	boolean isWord() {
+		return isWord;
+	}
+
+	/*
+	 * How a WordIterator reads Trie nodes. A node stands for its own
+	 * children, which are read in place as the walk goes.
+	 */
+	static final Nodes<Trie, Trie> NODES = new Nodes<Trie, Trie>() {
+		@Override
+		public boolean isWord(Trie node) {
+			return node.isWord;
+		}
+
+		@Override
+		public Trie children(Trie node) {
+			return node;
+		}
+
+		@Override
+		public int childCount(Trie node) {
+			return node.childSlots();
+		}
+
+		@Override
+		public Trie childAt(Trie node, int index) {
+			return node.childAt(index);
+		}
+
+		@Override
+		public char letterAt(Trie node, int index) {
+			return node.letterAt(index);
+		}
+
+		@Override
+		public int indexFor(Trie node, char letter) {
+			return node.slotFor(letter);
+		}
+	};
+
+	/*
+	 * Return the number of words at or below this node.
+	 */
+	int wordCount() {
+		return wordCount;
+	}
+
+	/*
+	 * Return the length of the longest path down from this node.
+	 */
+	int height() {
+		return height;
+	}
+
+	/*
+	 * Mark this node as the end of a word, for builders that create the
+	 * nodes themselves. Indexes are not updated, and neither are the cached
+	 * counts until the builder calls countAll().
+	 */
+	void setWord() {
+		isWord = true;
+	}
+
+	/*
+	 * Compute the cached counts of this root and every node below it from
+	 * scratch, once a builder has created the nodes itself.
+	 */
+	void countAll() {
+		if (indexes != null) {
+			indexes.depths = new int[] { 1 };
+		}
+		countAll(indexes, 0);
+	}
+
+	private void countAll(Indexes counts, int depth) {
+		for (Trie child : children) {
+			if (child != null) {
+				if (counts != null) {
+					counts.addNodes(depth + 1, depth + 1);
+				}
+				child.countAll(counts, depth + 1);
+			}
+		}
+		countChildren();
+	}
+
+	/*
+	 * Recompute the cached counts of this node from those of its children.
+	 */
+	private void countChildren() {
+		int words = isWord ? 1 : 0;
+		int nodes = 1;
+		int leaves = 0;
+		int longest = 0;
+		for (Trie child : children) {
+			if (child != null) {
+				words = words + child.wordCount;
+				nodes = nodes + child.nodeCount;
+				leaves = leaves + child.leafCount;
+				longest = Math.max(longest, child.height + 1);
+			}
+		}
+		wordCount = words;
+		nodeCount = nodes;
+		// a node with no children is a leaf itself
+		leafCount = Math.max(leaves, 1);
+		height = longest;
+	}
+
+	/*
+	 * Return the number of levels between the root and this node.
+	 */
+	private int depth() {
+		int depth = 0;
+		for (Trie node = parent; node != null; node = node.parent) {
+			depth++;
+		}
+		return depth;
+	}
+
+	private boolean isLeaf() {
+		return keys != null && keys.length == 0;
+	}
+
+	/*
+	 * Return the child for the given letter, or null if there is none.
+	 */
+	private Trie child(char letter) {
+		if (keys == null) {
+			int slot = letter - 'a';
+			return slot >= 0 && slot < ALPHABET ? children[slot] : null;
+		}
+		int index = Arrays.binarySearch(keys, letter);
+		return index >= 0 ? children[index] : null;
+	}
+
+	/*
+	 * Return the child for the given letter, creating it if necessary.
+	 */
+	Trie addChild(char letter) {
+		if (keys == null) {
+			int slot = letter - 'a';
+			if (slot >= 0 && slot < ALPHABET) {
+				if (children[slot] == null) {
+					children[slot] = newChild();
+				}
+				return children[slot];
+			}
+			// only letters fit in the dense table
+			toSparse();
+		}
+		int index = Arrays.binarySearch(keys, letter);
+		if (index >= 0) {
+			return children[index];
+		}
+		index = -index - 1;
+		int size = keys.length;
+		Trie child = newChild();
+		if (size == 0 && letter < SINGLE_KEYS.length) {
+			keys = SINGLE_KEYS[letter];
+			children = new Trie[] { child };
+			return child;
+		}
+		char[] newKeys = new char[size + 1];
+		Trie[] newChildren = new Trie[size + 1];
+		System.arraycopy(keys, 0, newKeys, 0, index);
+		System.arraycopy(children, 0, newChildren, 0, index);
+		System.arraycopy(keys, index, newKeys, index + 1, size - index);
+		System.arraycopy(children, index, newChildren, index + 1, size - index);
+		newKeys[index] = letter;
+		newChildren[index] = child;
+		keys = newKeys;
+		children = newChildren;
+		if (keys.length > DENSE_THRESHOLD) {
+			toDense();
+		}
+		return child;
+	}
+
+	/*
+	 * Return the root of the trie this node belongs to.
+	 */
+	private Trie root() {
+		Trie node = this;
+		while (node.parent != null) {
+			node = node.parent;
+		}
+		return node;
+	}
+
+	/*
+	 * Return the letters on the path from the root to this node.
+	 */
+	String path() {
+		StringBuilder path = new StringBuilder();
+		appendPath(path);
+		return path.toString();
+	}
+
+	/*
+	 * Append the letters on the path from the root to this node.
+	 */
+	private void appendPath(StringBuilder path) {
+		if (parent != null) {
+			parent.appendPath(path);
+			for (int i = 0; i < parent.children.length; i++) {
+				if (parent.children[i] == this) {
+					path.append(parent.letterAt(i));
+					break;
+				}
+			}
+		}
+	}
+
+	private Trie(Trie parent) {
+		this.parent = parent;
+	}
+
+	private Trie newChild() {
+		return new Trie(this);
+	}
+
+	private void toDense() {
+		Trie[] table = new Trie[ALPHABET];
+		for (int i = 0; i < keys.length; i++) {
+			int slot = keys[i] - 'a';
+			if (slot < 0 || slot >= ALPHABET) {
+				return;
+			}
+			table[slot] = children[i];
+		}
+		keys = null;
+		children = table;
+	}
+
+	private void toSparse() {
+		int size = 0;
+		for (Trie child : children) {
+			if (child != null) {
+				size++;
+			}
+		}
+		char[] newKeys = new char[size];
+		Trie[] newChildren = new Trie[size];
+		int index = 0;
+		for (int slot = 0; slot < ALPHABET; slot++) {
+			if (children[slot] != null) {
+				newKeys[index] = (char) ('a' + slot);
+				newChildren[index] = children[slot];
+				index++;
+			}
+		}
+		keys = newKeys;
+		children = newChildren;
 	}
 
 	/*
@@ -21,18 +498,342 @@ public class Trie implements ITrie {
 	 */
 	@Override
 	public void insert(String word) {
-		if (word.equals("")) {
-			isWord = true;
+		insert(word, 0, word.length());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#insert(java.lang.CharSequence, int, int)
+	 */
+	@Override
+	public void insert(CharSequence word, int from, int to) {
+		add(word, from, to);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#insert(java.lang.String, int)
+	 */
+	@Override
+	public void insert(String word, int weight) {
+		if (weight < 0) {
+			throw new IllegalArgumentException("Weights must not be negative: " + weight);
+		}
+		add(word, 0, word.length()).setWeight(weight);
+	}
+
+	/*
+	 * Insert the word between from and to and return the node where it ends.
+	 */
+	private Trie add(CharSequence word, int from, int to) {
+		if (parent != null) {
+			Trie root = root();
+			if (root.indexes != null && root.indexes.indexWords()) {
+				// the indexes of the root have to see the whole word
+				StringBuilder path = new StringBuilder();
+				appendPath(path);
+				path.append(word, from, to);
+				return root.add(path, 0, path.length());
+			}
+		}
+		Trie node = this;
+		// the number of nodes created at the end of the path, and whether the first went next to existing children
+		int created = 0;
+		boolean branched = false;
+		for (int i = from; i < to; i++) {
+			char letter = word.charAt(i);
+			Trie child = created == 0 ? node.child(letter) : null;
+			if (child == null) {
+				if (created == 0) {
+					branched = !node.isLeaf();
+				}
+				child = node.addChild(letter);
+				created++;
+			}
+			node = child;
+		}
+		Visits.add(to - from + 1);
+		if (!node.isWord) {
+			node.isWord = true;
+			node.countWord(created, branched);
+			if (indexes != null && indexes.indexWords()) {
+				indexes.add(node, word, from, to);
+			}
+		}
+		return node;
+	}
+
+	/*
+	 * Bring the cached counts up to date for a word that now ends at this
+	 * node, climbing back to the root. The last created nodes of the path are
+	 * new. If branched, the first of them was added next to existing
+	 * children and is an extra leaf; otherwise it took over from a leaf.
+	 */
+	private void countWord(int created, boolean branched) {
+		Trie node = this;
+		int distance = 0;
+		while (true) {
+			if (distance < created) {
+				node.wordCount = 1;
+				node.nodeCount = distance + 1;
+				node.height = distance;
+			} else {
+				node.wordCount++;
+				node.nodeCount = node.nodeCount + created;
+				if (branched) {
+					node.leafCount++;
+				}
+				node.height = Math.max(node.height, distance);
+			}
+			if (node.parent == null) {
+				break;
+			}
+			node = node.parent;
+			distance++;
+		}
+		// node is now the root, and distance the depth of this node
+		if (created > 0 && node.indexes != null) {
+			node.indexes.addNodes(distance - created + 1, distance);
+		}
+	}
+
+	/*
+	 * Set the weight of the word ending at this node, and bring the cached
+	 * maximum weights up to date on the way back to the root.
+	 */
+	private void setWeight(int weight) {
+		this.weight = weight;
+		updateMaxWeights();
+	}
+
+	/*
+	 * Recompute the cached maximum weight of this node and its ancestors,
+	 * stopping at the first one that does not change.
+	 */
+	private void updateMaxWeights() {
+		for (Trie node = this; node != null; node = node.parent) {
+			int max = node.isWord ? node.weight : 0;
+			for (Trie child : node.children) {
+				if (child != null && child.maxWeight > max) {
+					max = child.maxWeight;
+				}
+			}
+			if (max == node.maxWeight) {
+				break;
+			}
+			node.maxWeight = max;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#remove(java.lang.String)
+	 */
+	@Override
+	public boolean remove(String word) {
+		Trie node = walk(word, 0, word.length());
+		if (node == null || !node.isWord) {
+			return false;
+		}
+		Indexes indexes = root().indexes;
+		if (indexes != null && indexes.indexWords()) {
+			indexes.remove(node, node.path());
+		}
+		node.removeWord();
+		return true;
+	}
+
+	/*
+	 * Clear the word ending at this node, prune the nodes that are left with
+	 * no words, and bring the cached counts and weights up to date.
+	 */
+	private void removeWord() {
+		isWord = false;
+		weight = 0;
+		pruneAndUpdate();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#removeAllWithPrefix(java.lang.String)
+	 */
+	@Override
+	public int removeAllWithPrefix(String prefix) {
+		Trie node = walk(prefix, 0, prefix.length());
+		if (node == null) {
+			return 0;
+		}
+		int removed = node.wordCount;
+		Indexes indexes = root().indexes;
+		if (node.parent == null) {
+			node.keys = NO_KEYS;
+			node.children = NO_CHILDREN;
+			node.isWord = false;
+			node.weight = 0;
+			node.maxWeight = 0;
+			node.countChildren();
+			if (indexes != null) {
+				indexes.clear();
+			}
+			return removed;
+		}
+		if (indexes != null) {
+			node.unindex(indexes, indexes.indexWords() ? new StringBuilder(node.path()) : null, node.depth());
+		}
+		// the whole branch goes at once, and is left detached with its counts
+		Trie parent = node.parent;
+		parent.removeChild(node);
+		node.parent = null;
+		parent.pruneAndUpdate();
+		return removed;
+	}
+
+	/*
+	 * Take this node, which is the given number of levels below the root,
+	 * and the nodes below it out of the depth counts of the root, and their
+	 * words out of its indexes when path holds the word ending at this node.
+	 */
+	private void unindex(Indexes indexes, StringBuilder path, int depth) {
+		indexes.removeNodes(depth, depth);
+		if (isWord && path != null) {
+			indexes.remove(this, path);
+		}
+		for (int slot = 0; slot < children.length; slot++) {
+			Trie child = children[slot];
+			if (child != null) {
+				if (path != null) {
+					path.append(letterAt(slot));
+				}
+				child.unindex(indexes, path, depth + 1);
+				if (path != null) {
+					path.setLength(path.length() - 1);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Prune this node if it has been left with no words, then recompute the
+	 * cached counts and weights of the nodes that stay, up to the root.
+	 */
+	private void pruneAndUpdate() {
+		int depth = depth();
+		Trie kept = prune();
+		if (kept != this) {
+			Indexes counts = kept.root().indexes;
+			if (counts != null) {
+				counts.removeNodes(kept.depth() + 1, depth);
+			}
+		}
+		for (Trie node = kept; node != null; node = node.parent) {
+			node.countChildren();
+		}
+		kept.updateMaxWeights();
+	}
+
+	/*
+	 * Remove this node and then its ancestors for as long as they are left
+	 * with no word at or below them, and return the lowest node that stays.
+	 * The root always stays. This only climbs the path back to the root, so
+	 * it takes time in proportion to the depth of the node.
+	 */
+	private Trie prune() {
+		Trie node = this;
+		while (node.parent != null && !node.isWord && node.keys != null && node.keys.length == 0) {
+			Trie parent = node.parent;
+			parent.removeChild(node);
+			node.parent = null;
+			node = parent;
+		}
+		return node;
+	}
+
+	/*
+	 * Remove the given child. A dense node keeps its table until compact()
+	 * unless it is left with no children at all.
+	 */
+	private void removeChild(Trie child) {
+		if (keys == null) {
+			boolean empty = true;
+			for (int slot = 0; slot < ALPHABET; slot++) {
+				if (children[slot] == child) {
+					children[slot] = null;
+				} else if (children[slot] != null) {
+					empty = false;
+				}
+			}
+			if (empty) {
+				keys = NO_KEYS;
+				children = NO_CHILDREN;
+			}
+			return;
+		}
+		int index = 0;
+		while (children[index] != child) {
+			index++;
+		}
+		int size = keys.length - 1;
+		if (size == 0) {
+			keys = NO_KEYS;
+			children = NO_CHILDREN;
+			return;
+		}
+		char[] newKeys;
+		if (size == 1 && keys[1 - index] < SINGLE_KEYS.length) {
+			newKeys = SINGLE_KEYS[keys[1 - index]];
 		} else {
-			char first = word.charAt(0);
-			String rest = word.substring(1);
-			if (!children.containsKey(first)) {
-				Trie child = new Trie();
-				child.parent = this;
-				children.put(first, child);
+			newKeys = new char[size];
+			System.arraycopy(keys, 0, newKeys, 0, index);
+			System.arraycopy(keys, index + 1, newKeys, index, size - index);
+		}
+		Trie[] newChildren = new Trie[size];
+		System.arraycopy(children, 0, newChildren, 0, index);
+		System.arraycopy(children, index + 1, newChildren, index, size - index);
+		keys = newKeys;
+		children = newChildren;
+	}
+
+	/**
+	 * Reclaim the space that removing words leaves behind in the trie this
+	 * node belongs to. Removal already frees pruned nodes and shrinks sparse
+	 * nodes; this also moves dense nodes that are down to the sparse limit
+	 * back to the sparse layout, and drops removed words from the substring
+	 * index. It visits every node, so it is meant to be run once after a
+	 * batch of removals.
+	 */
+	public void compact() {
+		Trie root = root();
+		root.compactNodes();
+		if (root.indexes != null) {
+			if (root.indexes.suffixes != null) {
+				root.indexes.suffixes.compactNodes();
+			}
+			if (root.indexes.substrings != null) {
+				root.indexes.substrings.compact();
+			}
+		}
+	}
+
+	private void compactNodes() {
+		if (keys == null) {
+			int size = 0;
+			for (Trie child : children) {
+				if (child != null) {
+					size++;
+				}
+			}
+			if (size <= DENSE_THRESHOLD) {
+				toSparse();
+			}
+		}
+		for (Trie child : children) {
+			if (child != null) {
+				child.compactNodes();
 			}
-			Trie node = children.get(first);
-			node.insert(rest);
 		}
 	}
 
@@ -43,7 +844,7 @@ public class Trie implements ITrie {
 	 */
 	@Override
 	public boolean hasChild(char letter) {
-		return children.containsKey(letter);
+		return child(letter) != null;
 	}
 
 	/*
@@ -53,9 +854,7 @@ public class Trie implements ITrie {
 	 */
 	@Override
 	public ITrie getChild(char letter) {
-		if (children.containsKey(letter))
-			return children.get(letter);
-		return null;
+		return child(letter);
 	}
 
 	/*
@@ -77,19 +876,17 @@ public class Trie implements ITrie {
 	 */
 	@Override
 	public ITrie followPath(String path) {
-		ITrie res = null;
+		return walk(path, 0, path.length());
+	}
 
-		if (path.equals("")) {
-			return this;
-		} else {
-			char first = path.charAt(0);
-			String rest = path.substring(1);
-			if (children.containsKey(first)) {
-				Trie node = children.get(first);
-				res = node.followPath(rest);
-			}
-		}
-		return res;
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#followPath(java.lang.CharSequence, int, int)
+	 */
+	@Override
+	public ITrie followPath(CharSequence path, int from, int to) {
+		return walk(path, from, to);
 	}
 
 	/*
@@ -99,213 +896,421 @@ public class Trie implements ITrie {
 	 */
 	@Override
 	public boolean contains(String word) {
-		boolean res = false;
-
-		if (word.equals("")) {
-			return this.isWord;
-		} else {
-			char first = word.charAt(0);
-			String rest = word.substring(1);
-			if (children.containsKey(first)) {
-				Trie node = children.get(first);
-				res = node.contains(rest);
-			}
-		}
-		return res;
+		return contains(word, 0, word.length());
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#contains(java.lang.CharSequence, int, int)
+	 */
 	@Override
-	public Set<String> findAllWords() {
-		Set<String> words = new HashSet<>();
-		findAllWordsHelper(words, "");
-
-		return words;
+	public boolean contains(CharSequence word, int from, int to) {
+		Trie node = walk(word, from, to);
+		return node != null && node.isWord;
 	}
 
-	private void findAllWordsHelper(Set<String> words, String word) {
-		if (isWord) {
-			words.add(word);
+	/*
+	 * Follow the letters of path between from and to, returning the node
+	 * reached or null if the path leaves the trie.
+	 */
+	private Trie walk(CharSequence path, int from, int to) {
+		Trie node = this;
+		int i = from;
+		while (i < to && node != null) {
+			node = node.child(path.charAt(i++));
 		}
+		Visits.add(i - from + 1);
+		return node;
+	}
 
-		for (char c : children.keySet()) {
-			Trie child = (Trie) getChild(c);
-			child.findAllWordsHelper(words, word + c);
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#containsBatch(java.lang.String[], boolean[])
+	 */
+	@Override
+	public void containsBatch(String[] words, boolean[] found) {
+		if (found.length < words.length) {
+			throw new IllegalArgumentException("Too few results for " + words.length + " words: " + found.length);
+		}
+		Trie[] nodes = new Trie[words.length];
+		walkBatch(words, nodes);
+		for (int i = 0; i < words.length; i++) {
+			found[i] = nodes[i] != null && nodes[i].isWord;
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#followPathBatch(java.lang.String[], tries.ITrie[])
+	 */
 	@Override
-	public Set<String> findWordsBeginningWith(String prefix) {
-		Trie node = (Trie) followPath(prefix);
-
-		Set<String> words = new HashSet<>();
-
-		node.findAllWordsHelper(words, prefix);
-
-		return words;
+	public void followPathBatch(String[] paths, ITrie[] nodes) {
+		if (nodes.length < paths.length) {
+			throw new IllegalArgumentException("Too few results for " + paths.length + " paths: " + nodes.length);
+		}
+		Trie[] ends = new Trie[paths.length];
+		walkBatch(paths, ends);
+		System.arraycopy(ends, 0, nodes, 0, paths.length);
 	}
 
-	private void findWordsBeginningWithHelper(Set<String> words, String word,
-			String prefix) {
-		if (isWord) {
-			words.add(word);
+	/*
+	 * Walk every path of the batch, setting ends[i] to the node that
+	 * walk(paths[i]) would return. The paths are grouped by their first two
+	 * letters so that each one starts from where the previous one left the
+	 * letters they share, instead of from this node, and neighbouring paths
+	 * visit neighbouring nodes.
+	 */
+	private void walkBatch(String[] paths, Trie[] ends) {
+		/*
+		 * Sorting the first two letters with the index in the low bits is far
+		 * cheaper than sorting the strings. The order only decides how much of
+		 * the walk is shared, so it does not matter that it is not alphabetical.
+		 */
+		long[] order = new long[paths.length];
+		for (int i = 0; i < paths.length; i++) {
+			String path = paths[i];
+			long first = path.isEmpty() ? 0 : path.charAt(0);
+			long second = path.length() < 2 ? 0 : path.charAt(1);
+			order[i] = first << 48 | second << 32 | i;
 		}
-
-		for (char c : children.keySet()) {
-			Trie child = (Trie) getChild(c);
-			child.findAllWordsHelper(words, word + c);
+		Arrays.sort(order);
+		// nodes[d] is the node d letters along the previous path, up to where it left the trie
+		Trie[] nodes = new Trie[16];
+		nodes[0] = this;
+		String previous = "";
+		int reached = 0;
+		int visited = 0;
+		for (long key : order) {
+			int i = (int) key;
+			String path = paths[i];
+			int depth = 0;
+			int shared = Math.min(reached, path.length());
+			while (depth < shared && path.charAt(depth) == previous.charAt(depth)) {
+				depth++;
+			}
+			Trie node = nodes[depth];
+			while (depth < path.length()) {
+				Trie child = node.child(path.charAt(depth));
+				if (child == null) {
+					break;
+				}
+				node = child;
+				depth++;
+				visited++;
+				if (depth == nodes.length) {
+					nodes = Arrays.copyOf(nodes, depth * 2);
+				}
+				nodes[depth] = node;
+			}
+			ends[i] = depth == path.length() ? node : null;
+			previous = path;
+			reached = depth;
 		}
+		Visits.add(visited + paths.length);
 	}
 
 	@Override
-	public Set<String> findWordsEndingWith(String suffix) {
-		Set<String> words = new HashSet<>();
-		findWordsEndingWithHelper(words, "", suffix);
-		return words;
+	public Set<String> findAllWords() {
+		return toSet(streamAllWords(), true);
 	}
 
-	private void findWordsEndingWithHelper(Set<String> words, String word,
-			String suffix) {
-		if (followPath(suffix) != null) {
-			words.add(word + suffix);
-		}
+	@Override
+	public Set<String> findWordsBeginningWith(String prefix) {
+		return toSet(streamWordsBeginningWith(prefix), true);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#streamAllWords()
+	 */
+	@Override
+	public Stream<String> streamAllWords() {
+		return StreamSupport.stream(new WordSpliterator(this, ""), false);
+	}
 
-		for (char c : children.keySet()) {
-			Trie child = (Trie) getChild(c);
-			child.findWordsEndingWithHelper(words, word + c, suffix);
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#streamWordsBeginningWith(java.lang.String)
+	 */
+	@Override
+	public Stream<String> streamWordsBeginningWith(String prefix) {
+		Trie node = walk(prefix, 0, prefix.length());
+		if (node == null) {
+			return Stream.empty();
 		}
+		return StreamSupport.stream(new WordSpliterator(node, prefix), false);
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see tries.ITrie#findWordsContaining(java.lang.String)
+	 * @see tries.ITrie#streamWordsBeginningWith(java.lang.String, java.lang.String)
 	 */
 	@Override
-	public Set<String> findWordsContaining(String patttern) {
-		Set<String> words = new HashSet<>();
-		findWordsContainingHelper(words, "", patttern);
-		return words;
+	public Stream<String> streamWordsBeginningWith(String prefix, String after) {
+		Trie node = walk(prefix, 0, prefix.length());
+		if (node == null || (!after.startsWith(prefix) && after.compareTo(prefix) > 0)) {
+			return Stream.empty();
+		}
+		WordIterator<Trie, Trie> words = new WordIterator<>(NODES, node, prefix);
+		if (after.startsWith(prefix)) {
+			words.resumeAfter(after);
+		}
+		return stream(words, true);
 	}
 
-	private void findWordsContainingHelper(Set<String> words, String word,
-			String patttern) {
-		if (word.endsWith(patttern)) {
-			findAllWordsHelper(words, word);
+	private static Stream<String> stream(Iterator<String> words, boolean sorted) {
+		int characteristics = Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL;
+		if (sorted) {
+			characteristics |= Spliterator.SORTED;
 		}
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(words, characteristics), false);
+	}
 
-		for (char c : children.keySet()) {
-			Trie child = (Trie) getChild(c);
-			child.findWordsContainingHelper(words, word + c, patttern);
+	/*
+	 * Collect the words into a set. Streams that split well are run in
+	 * parallel when this trie is in parallel mode. The words are gathered
+	 * into an array first: the streams of whole subtrees know their exact
+	 * size, so the array is allocated once and each task writes its own part
+	 * of it, and other streams fill a buffer per task that is copied once.
+	 * The set is only built when the number of words is known, so it never
+	 * has to grow.
+	 */
+	private Set<String> toSet(Stream<String> words, boolean splits) {
+		if (splits && isParallel()) {
+			words = words.parallel();
 		}
+		return new HashSet<>(Arrays.asList(words.toArray(String[]::new)));
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see tries.ITrie#findCloseWordsChangedLetters(java.lang.String, int)
+	 * @see tries.ITrie#topKWithPrefix(java.lang.String, int)
 	 */
 	@Override
-	public Set<String> findCloseWordsChangedLetters(String word, int distance) {
-		Set<String> words = new HashSet<>();
-
-		findCloseHelper(words, word, distance, "");
+	public List<String> topKWithPrefix(String prefix, int k) {
+		List<String> words = new ArrayList<>();
+		Trie start = walk(prefix, 0, prefix.length());
+		if (start == null || k <= 0) {
+			return words;
+		}
+		/*
+		 * Best first search: a node is queued with the largest weight below
+		 * it and its path, which are bounds on the weight and the order of
+		 * its words, so words come off the queue in the order they are returned.
+		 * A candidate links to the candidate it was queued from rather than
+		 * holding its path, which is only spelled out for the words returned.
+		 */
+		PriorityQueue<Candidate> queue = new PriorityQueue<>();
+		queue.add(new Candidate(start, null, '\0', false));
+		int visited = 0;
+		while (!queue.isEmpty() && words.size() < k) {
+			Candidate next = queue.poll();
+			if (next.isWord) {
+				words.add(next.path(prefix));
+				continue;
+			}
+			Trie node = next.node;
+			visited++;
+			if (node.isWord) {
+				queue.add(new Candidate(node, next.from, next.letter, true));
+			}
+			for (int i = 0; i < node.children.length; i++) {
+				Trie child = node.children[i];
+				if (child != null) {
+					queue.add(new Candidate(child, next, node.letterAt(i), false));
+				}
+			}
+		}
+		Visits.add(visited);
 		return words;
 	}
 
-	private void findCloseHelper(Set<String> set, String word, int dis,
-			String res) {
+	/*
+	 * A queued word, or a queued node whose words have not been looked at yet.
+	 * Its path below the start of the search is the letters on its chain of
+	 * from links, and the candidates on those chains form a tree in which
+	 * each node has a single candidate.
+	 */
+	private static final class Candidate implements Comparable<Candidate> {
+		private final Trie node;
+		// the candidate of the parent node, or null at the start of the search
+		private final Candidate from;
+		private final char letter;
+		private final int depth;
+		private final boolean isWord;
 
-		if (word.equals("") && isWord) {
-			set.add(res);
-		} else if (!word.equals("")) {
-			char first = word.charAt(0);
-			String rest = word.substring(1);
+		Candidate(Trie node, Candidate from, char letter, boolean isWord) {
+			this.node = node;
+			this.from = from;
+			this.letter = letter;
+			this.depth = from == null ? 0 : from.depth + 1;
+			this.isWord = isWord;
+		}
 
-			for (char c : children.keySet()) {
-				Trie node = children.get(c);
-				if (c == first) {
-					node.findCloseHelper(set, rest, dis, res + first);
-				} else if (dis > 0) {
-					node.findCloseHelper(set, rest, dis - 1, res + c);
-				}
+		private int weight() {
+			return isWord ? node.weight : node.maxWeight;
+		}
+
+		/*
+		 * Return the path of this candidate after the prefix of the search.
+		 */
+		private String path(String prefix) {
+			char[] path = new char[prefix.length() + depth];
+			prefix.getChars(0, prefix.length(), path, 0);
+			for (Candidate c = this; c.from != null; c = c.from) {
+				path[prefix.length() + c.depth - 1] = c.letter;
 			}
+			return new String(path);
+		}
 
+		/*
+		 * Compare the paths of two candidates in the order of their strings,
+		 * by climbing to the node below which they part.
+		 */
+		private int comparePath(Candidate other) {
+			Candidate a = this;
+			Candidate b = other;
+			while (a.depth > b.depth) {
+				a = a.from;
+			}
+			while (b.depth > a.depth) {
+				b = b.from;
+			}
+			if (a.node == b.node) {
+				// one path is a prefix of the other
+				return Integer.compare(depth, other.depth);
+			}
+			while (a.from.node != b.from.node) {
+				a = a.from;
+				b = b.from;
+			}
+			return Character.compare(a.letter, b.letter);
 		}
 
+		@Override
+		public int compareTo(Candidate other) {
+			int order = Integer.compare(other.weight(), weight());
+			if (order == 0) {
+				order = comparePath(other);
+			}
+			if (order == 0) {
+				order = Boolean.compare(other.isWord, isWord);
+			}
+			return order;
+		}
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see tries.ITrie#findCloseWordsAddedLetters(java.lang.String, int)
+	 * @see tries.ITrie#findWordsMatching(java.lang.String, int, int)
 	 */
 	@Override
-	public Set<String> findCloseWordsAddedLetters(String words, int distance) {
-		Set<String> set = new HashSet<>();
-		findCloseHelper2(set, words, distance, "");
-		return set;
+	public Set<String> findWordsMatching(String pattern, int minLength, int maxLength) {
+		return toSet(streamWordsMatching(pattern, minLength, maxLength), false);
 	}
 
-	private void findCloseHelper2(Set<String> set, String word, int dis,
-			String res) {
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#streamWordsMatching(java.lang.String, int, int)
+	 */
+	@Override
+	public Stream<String> streamWordsMatching(String pattern, int minLength, int maxLength) {
+		WordPattern compiled = WordPattern.compile(pattern);
+		int min = Math.max(minLength, compiled.getMinLength());
+		int max = Math.min(maxLength, compiled.getMaxLength());
+		if (min > max || min > height) {
+			return Stream.empty();
+		}
+		return stream(new MatchingWordsIterator(this, compiled, min, max), true);
+	}
 
-		if (word.equals("") && isWord) {
-			set.add(res);
-			if (dis > 0) {
-				for (char c : children.keySet()) {
-					Trie node = children.get(c);
-					node.findCloseHelper3(set, word, dis - 1, res + c);
-				}
-			}
-		} else if (!word.equals("")) {
-			char first = word.charAt(0);
-			String rest = word.substring(1);
+	@Override
+	public Set<String> findWordsEndingWith(String suffix) {
+		return toSet(streamWordsEndingWith(suffix), indexes == null || indexes.suffixes == null);
+	}
 
-			for (char c : children.keySet()) {
-				Trie node = children.get(c);
-				if (c == first) {
-					node.findCloseHelper2(set, rest, dis, res + first);
-				} else if (dis > 0) {
-					node.findCloseHelper2(set, word, dis - 1, res + c);
-				}
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#streamWordsEndingWith(java.lang.String)
+	 */
+	@Override
+	public Stream<String> streamWordsEndingWith(String suffix) {
+		if (indexes != null && indexes.suffixes != null) {
+			Trie node = indexes.suffixes;
+			for (int i = suffix.length() - 1; i >= 0 && node != null; i--) {
+				node = node.child(suffix.charAt(i));
 			}
+			if (node == null) {
+				return Stream.empty();
+			}
+			StringBuilder reversed = new StringBuilder(suffix).reverse();
+			return stream(new WordIterator<>(NODES, node, reversed), false)
+					.map(word -> new StringBuilder(word).reverse().toString());
 		}
+		return streamAllWords().filter(word -> word.endsWith(suffix));
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see tries.ITrie#findCloseWordsRemovedLetters(java.lang.String, int)
+	 * @see tries.ITrie#findWordsContaining(java.lang.String)
 	 */
 	@Override
-	public Set<String> findCloseWordsRemovedLetters(String words, int distance) {
-		Set<String> set = new HashSet<>();
-		findCloseHelper3(set, words, distance, "");
-		return set;
+	public Set<String> findWordsContaining(String patttern) {
+		return toSet(streamWordsContaining(patttern), indexes == null || indexes.substrings == null);
 	}
 
-	private void findCloseHelper3(Set<String> set, String word, int dis,
-			String res) {
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#streamWordsContaining(java.lang.String)
+	 */
+	@Override
+	public Stream<String> streamWordsContaining(String pattern) {
+		if (indexes != null && indexes.substrings != null) {
+			return indexes.substrings.wordsContaining(pattern);
+		}
+		return streamAllWords().filter(word -> word.contains(pattern));
+	}
 
-		if (word.equals("") && isWord) {
-			set.add(res);
-			/*
-			 * } else if (word.length() == 1 && dis > 0 && isWord) {
-			 * set.add(res);
-			 */
-		} else if (!word.equals("")) {
-			char first = word.charAt(0);
-			String rest = word.substring(1);
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#findCloseWordsChangedLetters(java.lang.String, int)
+	 */
+	@Override
+	public Set<String> findCloseWordsChangedLetters(String word, int distance) {
+		return findCloseWords(word, distance, EditCosts.CHANGED_LETTERS);
+	}
 
-			for (char c : children.keySet()) {
-				Trie node = children.get(c);
-				if (c == first) {
-					node.findCloseHelper3(set, rest, dis, res + first);
-				} else if (dis > 0) {
-					findCloseHelper3(set, rest, dis - 1, res);
-				}
-			}
-		}
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#findCloseWordsAddedLetters(java.lang.String, int)
+	 */
+	@Override
+	public Set<String> findCloseWordsAddedLetters(String word, int distance) {
+		return findCloseWords(word, distance, EditCosts.ADDED_LETTERS);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#findCloseWordsRemovedLetters(java.lang.String, int)
+	 */
+	@Override
+	public Set<String> findCloseWordsRemovedLetters(String word, int distance) {
+		return findCloseWords(word, distance, EditCosts.REMOVED_LETTERS);
 	}
 
 	/*
@@ -315,72 +1320,199 @@ public class Trie implements ITrie {
 	 */
 	@Override
 	public Set<String> findCloseWordsAllChanges(String word, int distance) {
-		Set<String> set = new HashSet<>();
+		return findCloseWords(word, distance, EditCosts.ALL_CHANGES);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#findCloseWords(java.lang.String, int, tries.EditCosts)
+	 */
+	@Override
+	public Set<String> findCloseWords(String word, int distance, EditCosts costs) {
+		return toSet(streamCloseWords(word, distance, costs), false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#streamCloseWords(java.lang.String, int, tries.EditCosts)
+	 */
+	@Override
+	public Stream<String> streamCloseWords(String word, int distance, EditCosts costs) {
+		return stream(new CloseWordsIterator<>(NODES, this, "", word, distance, costs), true);
+	}
 
-		findCloseHelper4(set, word, distance, "");
-		return set;
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see tries.ITrie#countWordsWithPrefix(java.lang.String)
+	 */
+	@Override
+	public int countWordsWithPrefix(String prefix) {
+		Trie node = walk(prefix, 0, prefix.length());
+		return node == null ? 0 : node.wordCount;
 	}
 
-	private void findCloseHelper4(Set<String> set, String word, int dis,
-			String res) {
+	@Override
+	public int countLeafNotes() {
+		return leafCount;
+	}
 
-		if (word.equals("") && isWord) {
-			set.add(res);
-		} else if (!word.equals("")) {
-			char first = word.charAt(0);
-			String rest = word.substring(1);
+	@Override
+	public int getNumDeeperThan(int depth) {
+		if (depth < 0) {
+			return nodeCount;
+		}
+		if (depth >= height) {
+			return 0;
+		}
+		if (indexes != null) {
+			return indexes.countDeeperThan(depth);
+		}
+		return nodeCount - countWithin(depth);
+	}
 
-			for (char c : children.keySet()) {
-				Trie node = children.get(c);
-				if (c == first) {
-					node.findCloseHelper4(set, rest, dis, res + first);
-				} else if (dis > 0) {
-					node.findCloseHelper4(set, rest, dis - 1, res);
-					node.findCloseHelper4(set, word, dis - 1, res + c);
-					node.findCloseHelper4(set, rest, dis - 1, res + c);
+	/*
+	 * Count this node and the nodes at most the given number of levels below
+	 * it, only visiting the subtrees that go deeper than that.
+	 */
+	private int countWithin(int levels) {
+		int count = 1;
+		if (levels > 0) {
+			for (Trie child : children) {
+				if (child != null) {
+					count = count + (child.height < levels ? child.nodeCount : child.countWithin(levels - 1));
 				}
 			}
-
 		}
+		return count;
+	}
 
+	/**
+	 * Walk this node and everything below it to report how many nodes there
+	 * are, how big their child tables are and roughly how much heap they
+	 * take. The secondary indexes of a root are not included.
+	 * @return
+	 */
+	public MemoryStats memoryStats() {
+		MemoryStats stats = new MemoryStats();
+		addTo(stats);
+		return stats;
 	}
 
-	@Override
-	public int countLeafNotes() {
-		int count = 0;
-		if (children.keySet().isEmpty()) {
-			count++;
-		}
-		for (char c : children.keySet()) {
-			Trie child = (Trie) getChild(c);
-			count = count + child.countLeafNotes();
+	private void addTo(MemoryStats stats) {
+		stats.add(this);
+		for (Trie child : children) {
+			if (child != null) {
+				child.addTo(stats);
+			}
 		}
-		return count;
 	}
 
-	@Override
-	public int getNumDeeperThan(int depth) {
-		int count = 0;
+	/**
+	 * The size of the nodes of a trie. The estimated bytes assume a 64-bit
+	 * JVM with compressed references, where a node takes 56 bytes and an
+	 * array a 16 byte header, everything rounded up to 8 bytes. The empty and
+	 * one letter key arrays that nodes share are not counted.
+	 */
+	public static final class MemoryStats {
+		private static final int NODE_BYTES = 56;
+		private static final int ARRAY_BYTES = 16;
+
+		private long nodes;
+		private long words;
+		private long denseNodes;
+		private long sparseNodes;
+		private long childSlots;
+		private long emptySlots;
+		private long bytes;
+		// tableSizes[n] is the number of nodes with a child table of n slots
+		private int[] tableSizes = new int[ALPHABET + 1];
+
+		MemoryStats() {
 
-		if (depth < 0) {
-			count++;
 		}
 
-		for (char c : children.keySet()) {
-			Trie child = (Trie) getChild(c);
-			count = count + child.getNumDeeperThan(depth-1);
+		private void add(Trie node) {
+			nodes++;
+			if (node.isWord) {
+				words++;
+			}
+			bytes = bytes + NODE_BYTES;
+			int slots = node.children.length;
+			if (slots > 0) {
+				if (node.keys == null) {
+					denseNodes++;
+				} else {
+					sparseNodes++;
+				}
+				childSlots = childSlots + slots;
+				bytes = bytes + align(ARRAY_BYTES + 4L * slots);
+				if (node.keys != null && node.keys != SINGLE_KEYS[node.keys[0] & 0x7f]) {
+					bytes = bytes + align(ARRAY_BYTES + 2L * node.keys.length);
+				}
+			}
+			for (Trie child : node.children) {
+				if (child == null) {
+					emptySlots++;
+				}
+			}
+			if (slots >= tableSizes.length) {
+				tableSizes = Arrays.copyOf(tableSizes, slots + 1);
+			}
+			tableSizes[slots]++;
 		}
 
-		return count;
-	}
+		private static long align(long bytes) {
+			return (bytes + 7) & ~7L;
+		}
 
-	private void getNumDeeperThanHelper(int count, int depth) {
-		if (depth <= 0) {
-			count++;
+		public long getNodes() {
+			return nodes;
 		}
-		for (char c : children.keySet()) {
-			Trie child = (Trie) getChild(c);
-			child.getNumDeeperThanHelper(count, depth--);
+
+		public long getWords() {
+			return words;
+		}
+
+		/**
+		 * @return the nodes whose children are in a 26 slot table
+		 */
+		public long getDenseNodes() {
+			return denseNodes;
+		}
+
+		/**
+		 * @return the nodes whose children are in sorted arrays
+		 */
+		public long getSparseNodes() {
+			return sparseNodes;
+		}
+
+		public long getChildSlots() {
+			return childSlots;
+		}
+
+		public long getEmptySlots() {
+			return emptySlots;
+		}
+
+		/**
+		 * @return the number of nodes with a child table of each size, indexed by size
+		 */
+		public int[] getTableSizes() {
+			return tableSizes.clone();
+		}
+
+		public long getEstimatedBytes() {
+			return bytes;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d nodes, %d words, %d dense and %d sparse, %d of %d child slots empty, about %.1f MB",
+					nodes, words, denseNodes, sparseNodes, emptySlots, childSlots, bytes / 1e6);
 		}
 	}
 }
@@ -0,0 +1,275 @@
+package tries.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Builds a Trie from words that are already in sorted order, such as
+ * dictionary.txt, much faster than inserting them one at a time.
+ *
+ * Consecutive sorted words share their longest common prefix, so the builder
+ * keeps only the path to the previous word (the spine). Each word reuses the
+ * spine up to the prefix it shares with the previous word and adds its
+ * remaining letters below that, without walking down from the root or
+ * creating a String per word. Files and readers are split into words at
+ * whitespace, as Scanner does.
+ *
+ * Words that are out of order cause an IllegalArgumentException; repeated
+ * words are allowed. The Trie that is built has no indexes or weights.
+ */
+public final class TrieBuilder {
+	private boolean lowerCase;
+	private boolean parallel;
+
+	/**
+	 * Lower case every letter before it is added, as TestTrie does with the
+	 * upper case dictionary. The words have to be sorted once lower cased.
+	 * @param lowerCase
+	 * @return this builder
+	 */
+	public TrieBuilder lowerCase(boolean lowerCase) {
+		this.lowerCase = lowerCase;
+		return this;
+	}
+
+	/**
+	 * Build the subtree of each first letter in its own task, in the pool of
+	 * the calling thread or the common pool. The words are read in first.
+	 * @param parallel
+	 * @return this builder
+	 */
+	public TrieBuilder parallel(boolean parallel) {
+		this.parallel = parallel;
+		return this;
+	}
+
+	/**
+	 * Build a Trie of the words in the given file, which is read as UTF-8.
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public Trie build(Path file) throws IOException {
+		CharBuffer text = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(Files.readAllBytes(file)));
+		return build(text.array(), text.arrayOffset() + text.position(), text.arrayOffset() + text.limit());
+	}
+
+	/**
+	 * Build a Trie of the words read from the given reader, which is not
+	 * closed.
+	 * @param reader
+	 * @return
+	 * @throws IOException
+	 */
+	public Trie build(Reader reader) throws IOException {
+		char[] text = new char[8192];
+		int length = 0;
+		while (true) {
+			if (length == text.length) {
+				text = Arrays.copyOf(text, length * 2);
+			}
+			int read = reader.read(text, length, text.length - length);
+			if (read < 0) {
+				break;
+			}
+			length += read;
+		}
+		return build(text, 0, length);
+	}
+
+	/**
+	 * Build a Trie of the words in the given stream, in encounter order.
+	 * @param words
+	 * @return
+	 */
+	public Trie build(Stream<String> words) {
+		Trie root = new Trie();
+		if (!parallel) {
+			Spine spine = new Spine(root);
+			words.forEachOrdered(spine::add);
+			root.countAll();
+			return root;
+		}
+		List<String> list = words.collect(Collectors.toList());
+		List<Runnable> tasks = new ArrayList<>();
+		Spine spine = null;
+		int start = 0;
+		while (start < list.size() && list.get(start).isEmpty()) {
+			// the empty word sorts first and ends at the root
+			root.setWord();
+			start++;
+		}
+		while (start < list.size()) {
+			if (list.get(start).isEmpty()) {
+				throw new IllegalArgumentException("Words must be sorted: the empty word comes after " + list.get(start - 1));
+			}
+			char first = letter(list.get(start).charAt(0));
+			int end = start + 1;
+			while (end < list.size() && !list.get(end).isEmpty() && letter(list.get(end).charAt(0)) == first) {
+				end++;
+			}
+			spine = new Spine(root, first, spine);
+			Spine builder = spine;
+			List<String> group = list.subList(start, end);
+			tasks.add(() -> group.forEach(builder::add));
+			start = end;
+		}
+		run(tasks);
+		root.countAll();
+		return root;
+	}
+
+	private Trie build(char[] text, int from, int to) {
+		Trie root = new Trie();
+		if (!parallel) {
+			Spine spine = new Spine(root);
+			int i = from;
+			while (true) {
+				while (i < to && Character.isWhitespace(text[i])) {
+					i++;
+				}
+				if (i == to) {
+					root.countAll();
+					return root;
+				}
+				int start = i;
+				while (i < to && !Character.isWhitespace(text[i])) {
+					i++;
+				}
+				spine.add(text, start, i);
+			}
+		}
+		// find where the first letter changes, and give each run of words its own task
+		List<Runnable> tasks = new ArrayList<>();
+		int i = from;
+		int groupStart = -1;
+		char first = 0;
+		Spine spine = null;
+		while (true) {
+			while (i < to && Character.isWhitespace(text[i])) {
+				i++;
+			}
+			if (i == to || letter(text[i]) != first || spine == null) {
+				if (spine != null) {
+					Spine group = spine;
+					int start = groupStart;
+					int end = i;
+					tasks.add(() -> group.addAll(text, start, end));
+				}
+				if (i == to) {
+					break;
+				}
+				first = letter(text[i]);
+				spine = new Spine(root, first, spine);
+				groupStart = i;
+			}
+			while (i < to && !Character.isWhitespace(text[i])) {
+				i++;
+			}
+		}
+		run(tasks);
+		root.countAll();
+		return root;
+	}
+
+	private static void run(List<Runnable> tasks) {
+		IntStream.range(0, tasks.size()).parallel().forEach(i -> tasks.get(i).run());
+	}
+
+	private char letter(char c) {
+		return lowerCase ? Character.toLowerCase(c) : c;
+	}
+
+	/*
+	 * The path to the previous word. nodes[d] is the node at depth d, and the
+	 * first length letters of previous spell the previous word.
+	 */
+	private final class Spine {
+		private Trie[] nodes = new Trie[32];
+		private char[] previous = new char[32];
+		private int length;
+		private char[] scratch = new char[32];
+
+		Spine(Trie root) {
+			nodes[0] = root;
+		}
+
+		/*
+		 * Start below the root's child for the given letter, which the words
+		 * added here all begin with. The spines of the first letters are
+		 * created in order before any task runs, so only one thread adds
+		 * children to the root.
+		 */
+		Spine(Trie root, char first, Spine before) {
+			if (before != null && before.previous[0] >= first) {
+				throw new IllegalArgumentException("Words must be sorted: a word beginning with " + first
+						+ " comes after words beginning with " + before.previous[0]);
+			}
+			nodes[0] = root;
+			nodes[1] = root.addChild(first);
+			previous[0] = first;
+			// the previous word is only a prefix here, so a one letter word still marks the child
+			length = 1;
+		}
+
+		void add(String word) {
+			if (scratch.length < word.length()) {
+				scratch = new char[Math.max(word.length(), scratch.length * 2)];
+			}
+			word.getChars(0, word.length(), scratch, 0);
+			add(scratch, 0, word.length());
+		}
+
+		void addAll(char[] text, int from, int to) {
+			int i = from;
+			while (i < to) {
+				while (i < to && Character.isWhitespace(text[i])) {
+					i++;
+				}
+				int start = i;
+				while (i < to && !Character.isWhitespace(text[i])) {
+					i++;
+				}
+				if (i > start) {
+					add(text, start, i);
+				}
+			}
+		}
+
+		void add(char[] text, int from, int to) {
+			int size = to - from;
+			if (size >= nodes.length) {
+				nodes = Arrays.copyOf(nodes, Math.max(size + 1, nodes.length * 2));
+				previous = Arrays.copyOf(previous, nodes.length);
+			}
+			int shared = 0;
+			while (shared < size && shared < length && letter(text[from + shared]) == previous[shared]) {
+				shared++;
+			}
+			if (shared < size ? shared < length && letter(text[from + shared]) < previous[shared] : size < length) {
+				throw new IllegalArgumentException("Words must be sorted: " + new String(text, from, size)
+						+ " comes after " + new String(previous, 0, length));
+			}
+			Trie node = nodes[shared];
+			for (int i = shared; i < size; i++) {
+				char c = letter(text[from + i]);
+				previous[i] = c;
+				node = node.addChild(c);
+				nodes[i + 1] = node;
+			}
+			node.setWord();
+			length = size;
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package tries.impl;
+
+/**
+ * Counts the nodes that trie queries visit on each thread, for MeteredTrie.
+ * A query keeps its own count as it goes and adds it here when it is done,
+ * or for an enumeration each time it returns a word. Only the work done
+ * inside a metered call is counted: MeteredTrie brackets the call it
+ * delegates with begin and end, and adding checks that a metered call is in
+ * progress on the same thread. Everything is kept per thread, so metered
+ * calls on one core never write to memory that another core reads.
+ */
+final class Visits {
+	// for each thread, the nodes counted so far and the metered calls in progress on it
+	private static final ThreadLocal<long[]> COUNTS = ThreadLocal.withInitial(() -> new long[2]);
+
+	private Visits() {
+
+	}
+
+	/*
+	 * Start counting on this thread, returning the number of nodes counted
+	 * on it so far.
+	 */
+	static long begin() {
+		long[] counts = COUNTS.get();
+		counts[1]++;
+		return counts[0];
+	}
+
+	/*
+	 * Stop counting on this thread, unless a metered call that began earlier
+	 * is still in progress on it.
+	 */
+	static void end() {
+		COUNTS.get()[1]--;
+	}
+
+	static void add(int nodes) {
+		long[] counts = COUNTS.get();
+		if (counts[1] != 0) {
+			counts[0] += nodes;
+		}
+	}
+
+	/*
+	 * Return the number of nodes counted on this thread so far.
+	 */
+	static long count() {
+		return COUNTS.get()[0];
+	}
+}
@@ -0,0 +1,184 @@
+package tries.impl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Enumerates the words below a node depth first, keeping an explicit stack
+ * instead of recursing, so that a word is only built when the caller asks for
+ * it. Children are visited in letter order, which makes the words come out
+ * in alphabetical order. The nodes are read through a Nodes, so the same
+ * walk serves every layout of trie.
+ *
+ * Subclasses can skip whole subtrees by overriding enter and filter words
+ * by overriding accept. Both are given lengths in letters below the start,
+ * whatever the number of letters on each edge.
+ */
+class WordIterator<N, C> implements Iterator<String> {
+	private static final int VISIT_SELF = -1;
+
+	final Nodes<N, C> nodes;
+	final N start;
+	// stack[d] is the node d edges below the start, children[d] its children once it has been visited, next[d] the index of the next child to visit there
+	private Object[] stack = new Object[16];
+	private Object[] children = new Object[16];
+	private int[] next = new int[16];
+	// lengths[d] is the number of letters on the path from the start to stack[d]
+	private int[] lengths = new int[16];
+	// the prefix followed by the letters of the path to the current node
+	protected char[] path;
+	protected final int prefixLength;
+	private int depth;
+	private String pending;
+	// nodes reached since the last word was returned, for Visits
+	private int visited;
+
+	WordIterator(Nodes<N, C> nodes, N start, CharSequence prefix) {
+		this.nodes = nodes;
+		this.start = start;
+		prefixLength = prefix.length();
+		path = new char[prefixLength + 16];
+		for (int i = 0; i < prefixLength; i++) {
+			path[i] = prefix.charAt(i);
+		}
+		stack[0] = start;
+		next[0] = VISIT_SELF;
+	}
+
+	/*
+	 * Called when a node has just been reached, with the letters of the edge
+	 * to it at path[prefixLength + from] up to path[prefixLength + to].
+	 * Return false to skip the node and everything below it.
+	 */
+	protected boolean enter(int from, int to) {
+		return true;
+	}
+
+	/*
+	 * Return the prefix that every word starts with.
+	 */
+	String prefix() {
+		return new String(path, 0, prefixLength);
+	}
+
+	/*
+	 * Return the node that was reached last.
+	 */
+	@SuppressWarnings("unchecked")
+	protected N node() {
+		return (N) stack[depth];
+	}
+
+	/*
+	 * Called for each word node, whose path is the given number of letters
+	 * below the start. Return false to leave the word out.
+	 */
+	protected boolean accept(int length) {
+		return true;
+	}
+
+	/*
+	 * Continue with the first word that comes after the given word, which
+	 * must start with the prefix, in a trie with one letter on each edge.
+	 * This has to be called before the first word is read, and skips the
+	 * calls to enter.
+	 */
+	@SuppressWarnings("unchecked")
+	void resumeAfter(CharSequence after) {
+		// the start node's own word is the prefix, which is not after anything that starts with it
+		children[0] = nodes.children(start);
+		next[0] = 0;
+		for (int i = prefixLength; i < after.length(); i++) {
+			C snapshot = (C) children[depth];
+			char letter = after.charAt(i);
+			int index = nodes.indexFor(snapshot, letter);
+			N child = index == nodes.childCount(snapshot) ? null : nodes.childAt(snapshot, index);
+			if (child == null || nodes.letterAt(snapshot, index) != letter) {
+				// after is not in the trie, so carry on from the next letter up
+				next[depth] = index;
+				return;
+			}
+			next[depth] = index + 1;
+			push(snapshot, index, child);
+			// the words along the way are prefixes of after, so they come before it
+			children[depth] = nodes.children(child);
+			next[depth] = 0;
+		}
+	}
+
+	private void push(C snapshot, int index, N child) {
+		int from = lengths[depth];
+		int to = from + nodes.labelLength(snapshot, index, child);
+		depth++;
+		if (depth == stack.length) {
+			stack = Arrays.copyOf(stack, depth * 2);
+			children = Arrays.copyOf(children, depth * 2);
+			next = Arrays.copyOf(next, depth * 2);
+			lengths = Arrays.copyOf(lengths, depth * 2);
+		}
+		if (prefixLength + to > path.length) {
+			path = Arrays.copyOf(path, Math.max(prefixLength + to, path.length * 2));
+		}
+		nodes.copyLabel(snapshot, index, child, path, prefixLength + from);
+		stack[depth] = child;
+		next[depth] = VISIT_SELF;
+		lengths[depth] = to;
+		visited++;
+	}
+
+	@SuppressWarnings("unchecked")
+	private String advance() {
+		while (depth >= 0) {
+			int index = next[depth];
+			if (index == VISIT_SELF) {
+				N node = (N) stack[depth];
+				children[depth] = nodes.children(node);
+				next[depth] = 0;
+				if (nodes.isWord(node) && accept(lengths[depth])) {
+					Visits.add(visited);
+					visited = 0;
+					return new String(path, 0, prefixLength + lengths[depth]);
+				}
+				continue;
+			}
+			C snapshot = (C) children[depth];
+			int count = nodes.childCount(snapshot);
+			N child = null;
+			while (index < count && (child = nodes.childAt(snapshot, index)) == null) {
+				index++;
+			}
+			if (index == count) {
+				depth--;
+				continue;
+			}
+			next[depth] = index + 1;
+			int from = lengths[depth];
+			push(snapshot, index, child);
+			if (!enter(from, lengths[depth])) {
+				depth--;
+			}
+		}
+		Visits.add(visited);
+		visited = 0;
+		return null;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (pending == null) {
+			pending = advance();
+		}
+		return pending != null;
+	}
+
+	@Override
+	public String next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		String word = pending;
+		pending = null;
+		return word;
+	}
+}
@@ -0,0 +1,131 @@
+package tries.impl;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Enumerates the words below a node in alphabetical order, and can be split
+ * so that a parallel stream walks separate subtrees on separate threads.
+ *
+ * A spliterator covers its node's own word and a range of its child slots.
+ * Splitting hands the first half of the range to a new spliterator, and once
+ * a single child is left it moves down into that child and splits its slots
+ * instead, so a large subtree can be shared out as well. A child that has
+ * been started is walked by a WordIterator and is not split any further.
+ *
+ * The nodes cache the number of words below them, so a spliterator always
+ * knows exactly how many words it has left, and so do both halves of a
+ * split. Parallel streams use that to presize their results and to have
+ * each task write straight into its own part of them.
+ */
+final class WordSpliterator implements Spliterator<String> {
+	private Trie node;
+	private String prefix;
+	// whether the node's own word has yet to be returned
+	private boolean self;
+	// the child slots from (inclusive) to (exclusive) have not been started
+	private int from;
+	private int to;
+	// walks the child before from, once it has been started
+	private WordIterator<Trie, Trie> words;
+	// the number of words left to return
+	private long size;
+
+	WordSpliterator(Trie node, String prefix) {
+		this(node, prefix, true, null, 0, node.childSlots(), node.wordCount());
+	}
+
+	private WordSpliterator(Trie node, String prefix, boolean self, WordIterator<Trie, Trie> words, int from, int to,
+			long size) {
+		this.node = node;
+		this.prefix = prefix;
+		this.self = self;
+		this.words = words;
+		this.from = from;
+		this.to = to;
+		this.size = size;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super String> action) {
+		if (self) {
+			self = false;
+			if (node.isWord()) {
+				size--;
+				action.accept(prefix);
+				return true;
+			}
+		}
+		while (true) {
+			if (words != null) {
+				if (words.hasNext()) {
+					size--;
+					action.accept(words.next());
+					return true;
+				}
+				words = null;
+			}
+			if (from == to) {
+				return false;
+			}
+			Trie child = node.childAt(from);
+			if (child != null) {
+				words = new WordIterator<>(Trie.NODES, child, prefix + node.letterAt(from));
+			}
+			from++;
+		}
+	}
+
+	@Override
+	public Spliterator<String> trySplit() {
+		while (true) {
+			boolean started = (self && node.isWord()) || words != null;
+			int remaining = to - from;
+			if (remaining >= 2 || (remaining == 1 && started)) {
+				// the words that have been started stay in front, so they go with the first half
+				int mid = remaining >= 2 ? (from + to) >>> 1 : from;
+				long rest = 0;
+				for (int slot = mid; slot < to; slot++) {
+					Trie child = node.childAt(slot);
+					rest = rest + (child == null ? 0 : child.wordCount());
+				}
+				Spliterator<String> first = new WordSpliterator(node, prefix, self, words, from, mid, size - rest);
+				size = rest;
+				self = false;
+				words = null;
+				from = mid;
+				return first;
+			}
+			if (remaining == 0 || started) {
+				return null;
+			}
+			// one child is left, so split its children instead
+			Trie child = node.childAt(from);
+			if (child == null) {
+				return null;
+			}
+			prefix = prefix + node.letterAt(from);
+			node = child;
+			self = true;
+			from = 0;
+			to = child.childSlots();
+		}
+	}
+
+	@Override
+	public long estimateSize() {
+		return size;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | DISTINCT | NONNULL | SORTED | SIZED | SUBSIZED;
+	}
+
+	@Override
+	public Comparator<? super String> getComparator() {
+		// words come out in their natural order
+		return null;
+	}
+}